@@ -0,0 +1,133 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.diff.UnifiedDiffParser;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computation of the modified lines of each changed class, see
+ * {@link DiffTestSelectionMojo#getModifiedLinesPerQualifiedName(java.util.Iterator)}: comparison of the ASTs of
+ * both versions with GumTree, or mapping of the hunks to the classes.
+ * <p>
+ * The synthetic fixture writes both versions of the changed classes on disk. The commons-math fixture is the
+ * bundled example, prepared by src/main/bash/setup-commons-math.sh: its location is given by the system property
+ * commonsMath, ../commons-math by default.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChangeDetectionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SyntheticChange {
+
+        @Param({"1", "5", "20"})
+        public int numberOfFiles;
+
+        @Param({"50"})
+        public int numberOfMethods;
+
+        @Param({"AST", "LINES"})
+        public String changeDetection;
+
+        /**
+         * 0 to parse both versions of each file at each invocation
+         */
+        @Param({"0", "256"})
+        public int modelCacheSize;
+
+        private File directory;
+
+        private DiffTestSelectionMojo mojo;
+
+        private File diff;
+
+        @Setup
+        public void setUp() throws MojoExecutionException {
+            this.directory = Fixtures.createTemporaryDirectory();
+            final File project = new File(this.directory, "project");
+            final File otherVersion = new File(this.directory, "otherVersion");
+            Fixtures.writeProject(project, otherVersion, this.numberOfFiles, this.numberOfMethods, 3);
+            this.diff = new File(project, "patch.diff");
+            this.mojo = newMojo(project, this.diff, otherVersion, this.changeDetection, this.modelCacheSize);
+        }
+
+        @TearDown
+        public void tearDown() {
+            Fixtures.delete(this.directory);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CommonsMathChange {
+
+        private DiffTestSelectionMojo mojo;
+
+        private File diff;
+
+        @Setup
+        public void setUp() throws MojoExecutionException {
+            final File project = new File(System.getProperty("commonsMath", "../commons-math")).getAbsoluteFile();
+            final File otherVersion = new File(project.getParentFile(), project.getName() + "_fixed");
+            this.diff = new File(project, ".bugs-dot-jar/developer-patch.diff");
+            if (!this.diff.exists() || !otherVersion.exists()) {
+                throw new IllegalStateException(project + " is not prepared, please run src/main/bash/setup-commons-math.sh first.");
+            }
+            this.mojo = newMojo(project, this.diff, otherVersion, "AST", 0);
+        }
+    }
+
+    private static DiffTestSelectionMojo newMojo(File project,
+                                                 File diff,
+                                                 File otherVersion,
+                                                 String changeDetection,
+                                                 int modelCacheSize) throws MojoExecutionException {
+        final DiffTestSelectionMojo mojo = new DiffTestSelectionMojo();
+        mojo.setLog(Fixtures.getSilentLog());
+        mojo.setProject(Fixtures.getProject(project));
+        mojo.setPathToDiff(diff.getAbsolutePath());
+        mojo.setPathToOtherVersion(otherVersion.getAbsolutePath());
+        mojo.setChangeDetection(changeDetection);
+        mojo.setGranularity("LINE");
+        mojo.setModelCacheSize(modelCacheSize);
+        mojo.initialize();
+        return mojo;
+    }
+
+    private static Map<String, List<Integer>> getModifiedLines(DiffTestSelectionMojo mojo, File diff) throws IOException {
+        try (UnifiedDiffParser parser = new UnifiedDiffParser(new FileReader(diff))) {
+            return mojo.getModifiedLinesPerQualifiedName(parser);
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<Integer>> synthetic(SyntheticChange change) throws IOException {
+        return getModifiedLines(change.mojo, change.diff);
+    }
+
+    @Benchmark
+    public Map<String, List<Integer>> commonsMath(CommonsMathChange change) throws IOException {
+        return getModifiedLines(change.mojo, change.diff);
+    }
+
+}
@@ -0,0 +1,57 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.diff.FileDiff;
+import eu.stamp_project.diff_test_selection.diff.UnifiedDiffParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of a unified diff, from memory, so only the parser is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DiffParsingBenchmark {
+
+    @Param({"5", "100", "10000"})
+    public int numberOfFiles;
+
+    @Param({"10"})
+    public int numberOfChangedMethods;
+
+    private String diff;
+
+    @Setup
+    public void setUp() {
+        this.diff = Fixtures.getDiff(this.numberOfFiles, 100, this.numberOfChangedMethods);
+    }
+
+    @Benchmark
+    public int parse() throws IOException {
+        int numberOfHunks = 0;
+        try (UnifiedDiffParser parser = new UnifiedDiffParser(new StringReader(this.diff))) {
+            while (parser.hasNext()) {
+                final FileDiff fileDiff = parser.next();
+                numberOfHunks += fileDiff.getHunks().size();
+            }
+        }
+        return numberOfHunks;
+    }
+
+}
@@ -0,0 +1,249 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic, scalable, fixtures of the benchmarks: sources, diffs, coverage and selections.
+ * <p>
+ * The classes are org.example.Class0, org.example.Class1, ..., each with methods of five lines:
+ * <pre>
+ *     public int method3(int x) {
+ *         int y = x * 3;
+ *         return y + 0;
+ *     }
+ *
+ * </pre>
+ * A change replaces the "+ 0" of the return statement by "+ 1". Random choices are seeded, so all the runs of a
+ * benchmark use the same fixtures.
+ */
+class Fixtures {
+
+    static final String PACKAGE_NAME = "org.example";
+
+    static final String SOURCE_ROOT = "src/main/java/";
+
+    private static final int FIRST_METHOD_LINE = 4;
+
+    private static final int LINES_PER_METHOD = 5;
+
+    private static final long SEED = 23L;
+
+    private Fixtures() {
+    }
+
+    static String getClassName(int classIndex) {
+        return PACKAGE_NAME + ".Class" + classIndex;
+    }
+
+    static String getPath(int classIndex) {
+        return SOURCE_ROOT + getClassName(classIndex).replace('.', '/') + ".java";
+    }
+
+    static int getStartLine(int methodIndex) {
+        return FIRST_METHOD_LINE + methodIndex * LINES_PER_METHOD;
+    }
+
+    static int getReturnLine(int methodIndex) {
+        return getStartLine(methodIndex) + 2;
+    }
+
+    /**
+     * @return the indexes of the changed methods of a class, spread over the class
+     */
+    static int[] getChangedMethods(int numberOfMethods, int numberOfChangedMethods) {
+        final int size = Math.min(numberOfMethods, numberOfChangedMethods);
+        final int step = Math.max(1, numberOfMethods / Math.max(1, size));
+        final int[] changedMethods = new int[size];
+        for (int i = 0; i < size; i++) {
+            changedMethods[i] = i * step;
+        }
+        return changedMethods;
+    }
+
+    /**
+     * @param changed true for the version with the changes
+     */
+    static String getSource(int classIndex, int numberOfMethods, int numberOfChangedMethods, boolean changed) {
+        final BitSet changedMethods = new BitSet();
+        for (int method : getChangedMethods(numberOfMethods, numberOfChangedMethods)) {
+            changedMethods.set(method);
+        }
+        final StringBuilder source = new StringBuilder()
+                .append("package ").append(PACKAGE_NAME).append(";\n")
+                .append("\n")
+                .append("public class Class").append(classIndex).append(" {\n");
+        for (int method = 0; method < numberOfMethods; method++) {
+            source.append("    public int method").append(method).append("(int x) {\n")
+                    .append("        int y = x * ").append(method).append(";\n")
+                    .append("        return y + ").append(changed && changedMethods.get(method) ? 1 : 0).append(";\n")
+                    .append("    }\n")
+                    .append("\n");
+        }
+        return source.append("}\n").toString();
+    }
+
+    /**
+     * @return a git diff that changes the given number of methods in each one of the given number of classes
+     */
+    static String getDiff(int numberOfFiles, int numberOfMethods, int numberOfChangedMethods) {
+        final StringBuilder diff = new StringBuilder();
+        for (int classIndex = 0; classIndex < numberOfFiles; classIndex++) {
+            final String path = getPath(classIndex);
+            diff.append("diff --git a/").append(path).append(" b/").append(path).append("\n")
+                    .append("index 0123456..789abcd 100644\n")
+                    .append("--- a/").append(path).append("\n")
+                    .append("+++ b/").append(path).append("\n");
+            for (int method : getChangedMethods(numberOfMethods, numberOfChangedMethods)) {
+                final int line = getReturnLine(method);
+                diff.append("@@ -").append(line).append(",1 +").append(line).append(",1 @@\n")
+                        .append("-        return y + 0;\n")
+                        .append("+        return y + 1;\n");
+            }
+        }
+        return diff.toString();
+    }
+
+    /**
+     * writes the sources of both versions, and the diff between them in the first version, as patch.diff
+     */
+    static void writeProject(File project, File otherVersion, int numberOfFiles, int numberOfMethods, int numberOfChangedMethods) {
+        for (int classIndex = 0; classIndex < numberOfFiles; classIndex++) {
+            write(new File(project, getPath(classIndex)), getSource(classIndex, numberOfMethods, numberOfChangedMethods, false));
+            write(new File(otherVersion, getPath(classIndex)), getSource(classIndex, numberOfMethods, numberOfChangedMethods, true));
+        }
+        write(new File(project, "patch.diff"), getDiff(numberOfFiles, numberOfMethods, numberOfChangedMethods));
+    }
+
+    /**
+     * @param numberOfTests    number of test methods, ten per test class
+     * @param numberOfClasses  number of classes under test
+     * @param classesPerTest   number of classes executed by each test method
+     * @param methodCoverage   probability that a test method executes a method of one of its classes
+     * @return the coverage of the test methods, with the same lines and methods as the sources above
+     */
+    static InMemoryCoverageIndex getCoverage(int numberOfTests,
+                                             int numberOfClasses,
+                                             int numberOfMethods,
+                                             int classesPerTest,
+                                             double methodCoverage) {
+        final Random random = new Random(SEED);
+        final InMemoryCoverageIndex coverage = new InMemoryCoverageIndex();
+        final BitSet lines = new BitSet();
+        for (int test = 0; test < numberOfTests; test++) {
+            final int testId = coverage.getTestId(getClassName(test / 10) + "Test", "test" + (test % 10));
+            coverage.setTestDuration(testId, 0.001D + random.nextDouble());
+            for (int i = 0; i < classesPerTest; i++) {
+                final String className = getClassName(random.nextInt(numberOfClasses));
+                lines.clear();
+                for (int method = 0; method < numberOfMethods; method++) {
+                    if (random.nextDouble() < methodCoverage) {
+                        lines.set(getStartLine(method) + 1, getReturnLine(method) + 1);
+                        coverage.addMethodCoverage(testId, className, getStartLine(method), getStartLine(method) + 3);
+                    }
+                }
+                coverage.addCoverage(testId, className, lines);
+            }
+        }
+        return coverage;
+    }
+
+    /**
+     * @return the modified lines of the given number of random classes, as the change detection gives them
+     */
+    static Map<String, List<Integer>> getModifiedLines(int numberOfClasses,
+                                                       int numberOfChangedClasses,
+                                                       int numberOfMethods,
+                                                       int numberOfChangedMethods) {
+        final Random random = new Random(SEED);
+        final Map<String, List<Integer>> modifiedLinesPerQualifiedName = new LinkedHashMap<>();
+        while (modifiedLinesPerQualifiedName.size() < Math.min(numberOfClasses, numberOfChangedClasses)) {
+            final List<Integer> modifiedLines = new ArrayList<>();
+            for (int method : getChangedMethods(numberOfMethods, numberOfChangedMethods)) {
+                modifiedLines.add(getReturnLine(method));
+            }
+            modifiedLinesPerQualifiedName.put(getClassName(random.nextInt(numberOfClasses)), modifiedLines);
+        }
+        return modifiedLinesPerQualifiedName;
+    }
+
+    /**
+     * @return a selection of the given number of test classes, with their durations in the given map
+     */
+    static Map<String, Set<String>> getSelection(int numberOfTestClasses, int testMethodsPerClass, Map<String, Double> durationPerTest) {
+        final Random random = new Random(SEED);
+        final Map<String, Set<String>> testThatExecuteChanges = new LinkedHashMap<>();
+        for (int testClass = 0; testClass < numberOfTestClasses; testClass++) {
+            final Set<String> testMethodNames = new LinkedHashSet<>();
+            for (int testMethod = 0; testMethod < testMethodsPerClass; testMethod++) {
+                testMethodNames.add("test" + testMethod);
+                durationPerTest.put(getClassName(testClass) + "Test#test" + testMethod, random.nextDouble());
+            }
+            testThatExecuteChanges.put(getClassName(testClass) + "Test", testMethodNames);
+        }
+        return testThatExecuteChanges;
+    }
+
+    /**
+     * @return a project whose base directory is the given one
+     */
+    static MavenProject getProject(File basedir) {
+        final MavenProject project = new MavenProject();
+        project.setFile(new File(basedir, "pom.xml"));
+        return project;
+    }
+
+    /**
+     * @return a log that writes nothing, so the benchmarks do not measure the console
+     */
+    static Log getSilentLog() {
+        return new DefaultLog(new ConsoleLogger(Logger.LEVEL_DISABLED, "benchmark"));
+    }
+
+    static File createTemporaryDirectory() {
+        try {
+            return Files.createTempDirectory("diff-test-selection-benchmark").toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void delete(File directory) {
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(File file, String content) {
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndexFile;
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.MappedCoverageIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching of the modified lines with the coverage, and ranking of the selected tests, see
+ * {@link DiffTestSelectionMojo#matchChangedWithCoverage(CoverageIndex, Map)}, on a synthetic coverage held in
+ * memory, or memory-mapped from its index file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MatchingBenchmark {
+
+    @Param({"1000", "50000"})
+    public int numberOfTests;
+
+    @Param({"1000"})
+    public int numberOfClasses;
+
+    @Param({"5", "50"})
+    public int numberOfChangedClasses;
+
+    @Param({"LINE", "METHOD", "CLASS"})
+    public String granularity;
+
+    /**
+     * MEMORY for the coverage read from the database, MAPPED for the coverage index
+     */
+    @Param({"MEMORY", "MAPPED"})
+    public String index;
+
+    private File directory;
+
+    private DiffTestSelectionMojo mojo;
+
+    private CoverageIndex coverage;
+
+    private Map<String, List<Integer>> modifiedLinesPerQualifiedName;
+
+    @Setup
+    public void setUp() {
+        this.directory = Fixtures.createTemporaryDirectory();
+        final InMemoryCoverageIndex coverage = Fixtures.getCoverage(this.numberOfTests, this.numberOfClasses, 50, 10, 0.3D);
+        if ("MAPPED".equals(this.index)) {
+            final File indexFile = new File(this.directory, "coverage.idx");
+            CoverageIndexFile.write(coverage, "benchmark", indexFile);
+            this.coverage = MappedCoverageIndex.open(indexFile);
+        } else {
+            this.coverage = coverage;
+        }
+        this.modifiedLinesPerQualifiedName = Fixtures.getModifiedLines(this.numberOfClasses, this.numberOfChangedClasses, 50, 3);
+        this.mojo = new DiffTestSelectionMojo();
+        this.mojo.setLog(Fixtures.getSilentLog());
+        this.mojo.setProject(Fixtures.getProject(this.directory));
+        this.mojo.setGranularity(this.granularity);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.delete(this.directory);
+    }
+
+    @Benchmark
+    public Map<String, Set<String>> match() {
+        return this.mojo.matchChangedWithCoverage(this.coverage, this.modifiedLinesPerQualifiedName);
+    }
+
+}
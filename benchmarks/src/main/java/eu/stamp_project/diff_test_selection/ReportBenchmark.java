@@ -0,0 +1,74 @@
+package eu.stamp_project.diff_test_selection;
+
+import org.apache.maven.plugin.logging.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing of the selected tests, and of their durations, by each kind of report.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportBenchmark {
+
+    @Param({"CSV", "JSON", "BINARY"})
+    public String report;
+
+    @Param({"100", "10000"})
+    public int numberOfTestClasses;
+
+    @Param({"20"})
+    public int testMethodsPerClass;
+
+    private File directory;
+
+    private Log log;
+
+    private Map<String, Set<String>> testThatExecuteChanges;
+
+    private Map<String, Double> durationPerTest;
+
+    @Setup
+    public void setUp() {
+        this.directory = Fixtures.createTemporaryDirectory();
+        this.log = Fixtures.getSilentLog();
+        this.durationPerTest = new HashMap<>();
+        this.testThatExecuteChanges = Fixtures.getSelection(this.numberOfTestClasses, this.testMethodsPerClass, this.durationPerTest);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Fixtures.delete(this.directory);
+    }
+
+    @Benchmark
+    public void write() {
+        DiffTestSelectionMojo.ReportEnum.valueOf(this.report).instance.report(
+                this.log,
+                new File(this.directory, "report." + this.report.toLowerCase()).getAbsolutePath(),
+                this.testThatExecuteChanges,
+                this.durationPerTest
+        );
+    }
+
+}
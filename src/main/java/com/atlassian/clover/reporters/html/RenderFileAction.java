@@ -31,14 +31,13 @@ import com.atlassian.clover.reporters.json.JSONObject;
 import com.atlassian.clover.reporters.util.CloverChartFactory;
 import com.atlassian.clover.util.CloverUtils;
 import eu.stamp_project.diff_test_selection.CloverReader;
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -188,12 +187,17 @@ public class RenderFileAction implements Callable {
         final Map<TestCaseInfo, BitSet> targetMethods = newHashMap();  // contains testid -> methodInfos
         final Map<TestCaseInfo, BitSet> targetElements = newHashMap(); // contains testid -> statements & branches
         final Map<TestCaseInfo, BlockMetrics> testMetrics = newHashMap(); // testid -> metrics
+        final Map<Integer, Integer> methodEndLines = newHashMap(); // method start line -> method end line
         Set<TestCaseInfo> testHits = database.getTestHits(fileInfo);
         FullFileInfo fcopy = fileInfo.copy((FullPackageInfo) fileInfo.getContainingPackage(), HasMetricsFilter.ACCEPT_ALL);
         Set<TestCaseInfo> testSet = Sets.newHashSet();
 
         final List<TestCaseInfo>[] testLineInfo = (List<TestCaseInfo>[]) new ArrayList[fcopy.getLineCount() + 1];
 
+        // the coverage of every test is collected, whatever the number of tests shown in the page
+        final InMemoryCoverageIndex coverage = CloverReader.getCoverage(reportConfig.getOutFile());
+        final String targetClassName = this.fileInfo.getContainingPackage().getName() + "." + this.fileInfo.getName().split("\\.")[0];
+
         for (final TestCaseInfo tci : testHits) {
             testSet.clear();
             testSet.add(tci);
@@ -219,6 +223,7 @@ public class RenderFileAction implements Callable {
                             targetMethods.put(tci, set);
                         }
                         set.set(info.getStartLine());
+                        methodEndLines.put(info.getStartLine(), info.getEndLine());
                     }
                 }
 
@@ -262,6 +267,10 @@ public class RenderFileAction implements Callable {
                     return bsc != null && bsc.get(i);
                 }
             });
+
+            if (coverage != null) {
+                this.buildCoverage(coverage, tci, targetElements.get(tci), targetMethods.get(tci), targetClassName, methodEndLines);
+            }
         }
 
         this.testLineInfo = testLineInfo;
@@ -289,16 +298,10 @@ public class RenderFileAction implements Callable {
         velocity.put("testsPerFile", new Integer(reportConfig.getMaxTestsPerFile()));
 
         /*
-            Here, we introduce a way to get the json containing the information we need,
-             i.e., the contribution of each test case
-             TODO Implement our own reporter, that compute this information, and do not build the whole HTML report
-             TODO which is unused in DSpot
+            Here, we collect the information we need, i.e., the contribution of each test case,
+             from the bitsets that are used to build the json of the page
          */
         final JSONObject jsonTestTargets = JSONObjectFactory.getJSONTestTargets(targetMethods, targetElements);
-        final String targetClassName = this.fileInfo.getContainingPackage().getName() + "." + this.fileInfo.getName().split("\\.")[0];
-        if (!CloverReader.coveragePerTestMethods.containsKey(targetClassName)) {
-            this.buildCoverage(sublist, jsonTestTargets, targetClassName);
-        }
         velocity.put("jsonTestTargets", jsonTestTargets);
         velocity.put("jsonPageData", JSONObjectFactory.getJSONPageData(fileInfo));
 
@@ -309,39 +312,31 @@ public class RenderFileAction implements Callable {
         return fcopy;
     }
 
-    private void buildCoverage(List<Map.Entry<TestCaseInfo, BlockMetrics>> sublist,
-                               JSONObject jsonTestTargets,
-                               String targetClassName) throws JSONException {
-        final Iterator keys = jsonTestTargets.keys();
-        while (keys.hasNext()) {
-            final String key = (String) keys.next();
-            final TestCaseInfo testCaseInfo = getTestCaseInfo(sublist, key.split("_")[1]);
-            final String testClassName = testCaseInfo.getRuntimeTypeName();
-            final String testName = testCaseInfo.getTestName();
-            if (!CloverReader.coveragePerTestMethods.containsKey(testClassName)) {
-                CloverReader.coveragePerTestMethods.put(testClassName, new HashMap<>());
-            }
-            if (!CloverReader.coveragePerTestMethods.get(testClassName).containsKey(testName)) {
-                CloverReader.coveragePerTestMethods.get(testClassName).put(testName, new HashMap<>());
-            }
-            if (!CloverReader.coveragePerTestMethods.get(testClassName).get(testName).containsKey(targetClassName)) {
-                CloverReader.coveragePerTestMethods.get(testClassName).get(testName).put(targetClassName, new ArrayList<>());
+    /**
+     * adds the coverage of the given test to the given index, directly from the bitsets of the lines of the
+     * statements, branches and methods that it hits
+     */
+    private void buildCoverage(InMemoryCoverageIndex coverage,
+                               TestCaseInfo testCaseInfo,
+                               BitSet elements,
+                               BitSet methods,
+                               String targetClassName,
+                               Map<Integer, Integer> methodEndLines) {
+        if (elements == null && methods == null) {
+            return;
+        }
+        final int testId = coverage.getTestId(testCaseInfo.getRuntimeTypeName(), testCaseInfo.getTestName());
+        coverage.setTestDuration(testId, testCaseInfo.getDuration());
+        if (elements != null) {
+            coverage.addCoverage(testId, targetClassName, elements);
+        }
+        if (methods != null) {
+            for (int line = methods.nextSetBit(0); line >= 0; line = methods.nextSetBit(line + 1)) {
+                coverage.addMethodCoverage(testId, targetClassName, line, methodEndLines.get(line));
             }
-            JSONObject currentValues = jsonTestTargets.getJSONObject((String) key);
-            ((List) currentValues.get("statements")).stream()
-                    .map(list -> ((Map) list).get("sl"))
-                    .forEach(line ->
-                            CloverReader.coveragePerTestMethods.get(testClassName).get(testName).get(targetClassName).add((Integer) line)
-                    );
-
         }
     }
 
-    private TestCaseInfo getTestCaseInfo(List<Map.Entry<TestCaseInfo, BlockMetrics>> sublist, String s) {
-        return sublist.stream().filter(entry -> entry.getKey().getId().equals(Integer.parseInt(s))).findFirst().get().getKey();
-    }
-
-
     private void insertLineInfos(FullFileInfo fcopy, List[] testLineInfo) throws TokenStreamException {
         new SourceRenderHelper(database, reportConfig, renderingHelper)
                 .insertLineInfosForFile(fcopy, velocity, getContextSet(), "&#160;", testLineInfo);
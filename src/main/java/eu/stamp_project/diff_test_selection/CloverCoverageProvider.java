@@ -0,0 +1,49 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.Set;
+
+/**
+ * Instruments the sources of the project with Clover, and reads the coverage from its database, or from its HTML
+ * report.
+ */
+public class CloverCoverageProvider implements CoverageProvider {
+
+    private final boolean useHtmlReport;
+
+    private final int parallelism;
+
+    /**
+     * @param useHtmlReport true to extract the coverage while rendering the HTML report, false to read the database
+     * @param parallelism   number of files of the database read at the same time
+     */
+    public CloverCoverageProvider(boolean useHtmlReport, int parallelism) {
+        this.useHtmlReport = useHtmlReport;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void computeCoverage(String pathToRootOfProject) throws MojoExecutionException {
+        new CloverExecutor().instrumentAndRunTest(pathToRootOfProject);
+    }
+
+    @Override
+    public CoverageIndex readCoverage(String pathToRootOfProject) {
+        return this.useHtmlReport ?
+                new CloverReader().read(pathToRootOfProject) :
+                new CloverDatabaseReader(this.parallelism).read(pathToRootOfProject);
+    }
+
+    /**
+     * reads only the files of the given classes from the database. The HTML report renders all of them anyway.
+     */
+    @Override
+    public CoverageIndex readCoverage(String pathToRootOfProject, Set<String> classNames) {
+        return this.useHtmlReport ?
+                new CloverReader().read(pathToRootOfProject) :
+                new CloverDatabaseReader(this.parallelism).read(pathToRootOfProject, classNames);
+    }
+
+}
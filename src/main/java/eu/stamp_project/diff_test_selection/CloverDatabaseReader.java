@@ -0,0 +1,190 @@
+package eu.stamp_project.diff_test_selection;
+
+import com.atlassian.clover.BitSetCoverageProvider;
+import com.atlassian.clover.CloverDatabase;
+import com.atlassian.clover.CoverageData;
+import com.atlassian.clover.CoverageDataSpec;
+import com.atlassian.clover.api.CloverException;
+import com.atlassian.clover.api.registry.BranchInfo;
+import com.atlassian.clover.api.registry.ClassInfo;
+import com.atlassian.clover.api.registry.ElementInfo;
+import com.atlassian.clover.api.registry.FileInfo;
+import com.atlassian.clover.api.registry.MethodInfo;
+import com.atlassian.clover.api.registry.StatementInfo;
+import com.atlassian.clover.registry.FileElementVisitor;
+import com.atlassian.clover.registry.entities.FullFileInfo;
+import com.atlassian.clover.registry.entities.FullPackageInfo;
+import com.atlassian.clover.registry.entities.TestCaseInfo;
+import com.atlassian.clover.registry.metrics.HasMetricsFilter;
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the per-test coverage directly from the Clover database, without going through the HTML reporter.
+ * Nothing is written on disk: no Velocity template is rendered and no source or JSON page is produced.
+ * <p>
+ * Files are read in parallel, as the HTML reporter renders them, each one into the same, thread-safe, index.
+ */
+public class CloverDatabaseReader {
+
+    private static final String ROOT_DIRECTORY = "/target/clover";
+
+    private static final String DATABASE_FILE = "/clover.db";
+
+    private final int parallelism;
+
+    public CloverDatabaseReader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param parallelism number of files read at the same time
+     */
+    public CloverDatabaseReader(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * read the database initialize by {@link CloverExecutor}.
+     *
+     * @param directory
+     * @return the index that gives, for each line of each class, the test methods that execute it
+     */
+    public CoverageIndex read(String directory) {
+        return this.readDatabase(new File(directory + ROOT_DIRECTORY + DATABASE_FILE));
+    }
+
+    /**
+     * Same as {@link #read(String)}, but only the files of the given classes are read: the test hits of the other
+     * ones are never computed.
+     *
+     * @param classNames full qualified names of the top-level classes to read
+     */
+    public CoverageIndex read(String directory, Set<String> classNames) {
+        return this.readDatabase(new File(directory + ROOT_DIRECTORY + DATABASE_FILE), classNames);
+    }
+
+    /**
+     * @param databaseFile a Clover database, e.g. the one of a shard
+     * @return the index that gives, for each line of each class, the test methods that execute it
+     */
+    public CoverageIndex readDatabase(File databaseFile) {
+        return this.readDatabase(databaseFile, null);
+    }
+
+    /**
+     * @param classNames the full qualified names of the top-level classes to read, null to read all of them
+     */
+    private CoverageIndex readDatabase(File databaseFile, @Nullable Set<String> classNames) {
+        final CloverDatabase database;
+        try {
+            database = CloverDatabase.loadWithCoverage(databaseFile.getAbsolutePath(), new CoverageDataSpec());
+        } catch (CloverException e) {
+            throw new RuntimeException(e);
+        }
+        // the model is shared by the threads that read the files, its lazy caches must be built beforehand
+        database.getFullModel().buildCaches();
+        final InMemoryCoverageIndex coverage = new InMemoryCoverageIndex();
+        final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (FileInfo file : database.getFullModel().getFiles(HasMetricsFilter.ACCEPT_ALL)) {
+                if (classNames == null || classNames.contains(getTargetClassName((FullFileInfo) file))) {
+                    futures.add(executor.submit(() -> this.readFile(database, (FullFileInfo) file, coverage)));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return coverage;
+    }
+
+    private void readFile(CloverDatabase database,
+                          FullFileInfo fileInfo,
+                          InMemoryCoverageIndex coverage) {
+        final Set<TestCaseInfo> testHits = database.getTestHits(fileInfo);
+        if (testHits.isEmpty()) {
+            return;
+        }
+        final String targetClassName = getTargetClassName(fileInfo);
+        // the copy receives the coverage provider of each test in turn, the original file info is left untouched
+        final FullFileInfo fcopy = fileInfo.copy((FullPackageInfo) fileInfo.getContainingPackage(), HasMetricsFilter.ACCEPT_ALL);
+        final CoverageData data = database.getCoverageData();
+        for (TestCaseInfo testCaseInfo : testHits) {
+            fcopy.setDataProvider(new BitSetCoverageProvider(data.getHitsFor(Collections.singleton(testCaseInfo), fcopy), data));
+            final BitSet coveredLines = new BitSet();
+            final List<MethodInfo> coveredMethods = new ArrayList<>();
+            getCoveredElements(fcopy, coveredLines, coveredMethods);
+            if (coveredLines.isEmpty() && coveredMethods.isEmpty()) {
+                continue;
+            }
+            final int testId = coverage.getTestId(testCaseInfo.getRuntimeTypeName(), testCaseInfo.getTestName());
+            coverage.setTestDuration(testId, testCaseInfo.getDuration());
+            coverage.addCoverage(testId, targetClassName, coveredLines);
+            for (MethodInfo method : coveredMethods) {
+                coverage.addMethodCoverage(testId, targetClassName, method.getStartLine(), method.getEndLine());
+            }
+        }
+    }
+
+    private static String getTargetClassName(FullFileInfo fileInfo) {
+        return fileInfo.getContainingPackage().getName() + "." + fileInfo.getName().split("\\.")[0];
+    }
+
+    /**
+     * collects the start lines of the statements and branches of the given file that have been hit,
+     * i.e. the same lines than the ones that the HTML report gives for each test, and the methods that have been hit
+     */
+    private void getCoveredElements(FullFileInfo fileInfo, BitSet coveredLines, List<MethodInfo> coveredMethods) {
+        fileInfo.visitElements(new FileElementVisitor() {
+            @Override
+            public void visitClass(ClassInfo info) {
+
+            }
+
+            @Override
+            public void visitMethod(MethodInfo info) {
+                if (info.getHitCount() > 0) {
+                    coveredMethods.add(info);
+                }
+            }
+
+            @Override
+            public void visitStatement(StatementInfo info) {
+                visitNode(info);
+            }
+
+            @Override
+            public void visitBranch(BranchInfo info) {
+                visitNode(info);
+            }
+
+            private void visitNode(ElementInfo info) {
+                if (info.getHitCount() > 0) {
+                    coveredLines.set(info.getStartLine());
+                }
+            }
+        });
+    }
+
+}
@@ -1,5 +1,6 @@
 package eu.stamp_project.diff_test_selection;
 
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.shared.invoker.DefaultInvocationRequest;
 import org.apache.maven.shared.invoker.DefaultInvoker;
 import org.apache.maven.shared.invoker.InvocationRequest;
@@ -7,9 +8,19 @@ import org.apache.maven.shared.invoker.Invoker;
 import org.apache.maven.shared.invoker.MavenInvocationException;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -26,23 +37,281 @@ public class CloverExecutor {
 
     private static final String POM_FILE = "pom.xml";
 
+    static final String SUREFIRE_REPORTS_DIRECTORY = "/target/surefire-reports";
+
+    /**
+     * the runtime of Clover used by the instrumented classes, relative to the local repository. It must have the
+     * version of the clover-maven-plugin that instruments them
+     */
+    private static final String CLOVER_RUNTIME = "org/openclover/clover/4.2.0/clover-4.2.0.jar";
+
+    private static final String DATABASE_FILE = "clover.db";
+
+    private static final String CLOVER_DIRECTORY = "/target/clover";
+
     /**
      * This class will execute, though maven goals, the instrumentation of Clover and the test of the project
+     *
+     * @throws MojoExecutionException if the build failed, e.g. if the project does not compile or if a test failed
+     */
+    void instrumentAndRunTest(String pathToRootOfProject) throws MojoExecutionException {
+        setMavenHome();
+        checkExitCode(runGoals(
+                pathToRootOfProject,
+                new Properties(),
+                "clean",
+                "org.openclover:clover-maven-plugin:4.2.0:setup",
+                "test"
+        ), pathToRootOfProject);
+    }
+
+    /**
+     * Same as {@link #instrumentAndRunTest(String)}, but the compiled and instrumented classes, and the Clover
+     * database, of the previous run are kept. The compiler detects the changed sources, and then compiles again all
+     * the sources of their module, main or test: it must only be used when the sources under test are unchanged.
+     * The coverage recordings of the previous run are deleted beforehand.
+     *
+     * @throws MojoExecutionException if the build failed
+     */
+    void instrumentAndRunTestIncrementally(String pathToRootOfProject) throws MojoExecutionException {
+        setMavenHome();
+        deleteCoverageRecordings(new File(pathToRootOfProject + CLOVER_DIRECTORY));
+        checkExitCode(runGoals(
+                pathToRootOfProject,
+                new Properties(),
+                "org.openclover:clover-maven-plugin:4.2.0:setup",
+                "test"
+        ), pathToRootOfProject);
+    }
+
+    /**
+     * @return true if the given Clover directory contains coverage recordings, i.e. the files written next to the
+     * database by the instrumented code
      */
-    void instrumentAndRunTest(String pathToRootOfProject) {
+    static boolean hasCoverageRecordings(File cloverDirectory) {
+        final File[] recordings = cloverDirectory.listFiles(CloverExecutor::isCoverageRecording);
+        return recordings != null && recordings.length > 0;
+    }
+
+    private static void deleteCoverageRecordings(File cloverDirectory) {
+        final File[] recordings = cloverDirectory.listFiles(CloverExecutor::isCoverageRecording);
+        if (recordings != null) {
+            for (File recording : recordings) {
+                if (!recording.delete()) {
+                    throw new RuntimeException("Could not delete " + recording.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    private static boolean isCoverageRecording(File directory, String name) {
+        return name.startsWith(DATABASE_FILE) && !name.equals(DATABASE_FILE);
+    }
+
+    /**
+     * Same as {@link #instrumentAndRunTest(String)}, but only the given test classes are executed.
+     *
+     * @param testClassNames full qualified names of the test classes to execute
+     * @throws MojoExecutionException if the build failed, e.g. if the project does not compile or if a test failed
+     */
+    void instrumentAndRunTests(String pathToRootOfProject, Collection<String> testClassNames) throws MojoExecutionException {
         setMavenHome();
-        runGoals(
+        checkExitCode(runGoals(
                 pathToRootOfProject,
+                getPropertiesToRun(testClassNames),
                 "clean",
                 "org.openclover:clover-maven-plugin:4.2.0:setup",
                 "test"
+        ), pathToRootOfProject);
+    }
+
+    /**
+     * Same as {@link #instrumentAndRunTest(String)}, but only the given modules of a multi-module project, and the
+     * modules they depend on, are built. Each module gets its own Clover database.
+     *
+     * @param modules paths of the modules to build, relative to the root of the project
+     * @throws MojoExecutionException if the build of one of the modules failed
+     */
+    void instrumentAndRunTestsOfModules(String pathToRootOfProject, Collection<String> modules) throws MojoExecutionException {
+        setMavenHome();
+        checkExitCode(runGoals(
+                pathToRootOfProject,
+                new Properties(),
+                "",
+                new ArrayList<>(modules),
+                Arrays.asList("clean", "org.openclover:clover-maven-plugin:4.2.0:setup", "test")
+        ), pathToRootOfProject);
+    }
+
+    /**
+     * Runs the tests listed in the given includes file, without any instrumentation.
+     *
+     * @param includesFile a surefire includes file, one test class per line, with its test methods if any
+     * @param forkCount    number of JVMs that run the tests in parallel
+     * @return the exit code of maven, i.e. 0 if all the tests passed
+     */
+    int runTests(String pathToRootOfProject, File includesFile, int forkCount) {
+        setMavenHome();
+        final Properties properties = new Properties();
+        properties.setProperty("surefire.includesFile", includesFile.getAbsolutePath());
+        properties.setProperty("failIfNoTests", "false");
+        properties.setProperty("failIfNoSpecifiedTests", "false");
+        properties.setProperty("surefire.failIfNoSpecifiedTests", "false");
+        properties.setProperty("forkCount", Integer.toString(forkCount));
+        properties.setProperty("reuseForks", "true");
+        return runGoals(pathToRootOfProject, properties, "test");
+    }
+
+    /**
+     * Builds the project from scratch and runs all its tests, without any instrumentation of the sources.
+     *
+     * @param additionalProperties properties given to maven, e.g. the argLine of the JVMs that run the tests
+     * @throws MojoExecutionException if the build failed
+     */
+    void cleanAndRunTests(String pathToRootOfProject, Properties additionalProperties) throws MojoExecutionException {
+        setMavenHome();
+        checkExitCode(runGoals(pathToRootOfProject, additionalProperties, "clean", "test"), pathToRootOfProject);
+    }
+
+    /**
+     * Same as {@link #instrumentAndRunTest(String)}, but the test classes are split into shards, that are executed
+     * by concurrent invocations of surefire. The project is cleaned, instrumented and compiled once, by a first
+     * invocation, so all the shards run the same instrumented classes, registered in the same Clover database, and
+     * only write their own coverage recordings next to it. The shards only run surefire, that does not have Clover
+     * on its classpath: the runtime of Clover is added to the classpath of the tests from the local repository.
+     * <p>
+     * Shards are balanced using the durations of the test classes in the surefire reports of the previous run.
+     * Test classes without report are given the average duration.
+     *
+     * @param testClassNames  full qualified names of the test classes to execute
+     * @param numberOfShards  number of concurrent invocations
+     * @param localRepository the local repository of maven, where the instrumentation has resolved Clover
+     * @throws MojoExecutionException if the instrumentation, or one of the shards, failed
+     */
+    void instrumentAndRunTestsInShards(String pathToRootOfProject,
+                                       Collection<String> testClassNames,
+                                       int numberOfShards,
+                                       File localRepository) throws MojoExecutionException {
+        setMavenHome();
+        final Map<String, Double> durations = SurefireReports.readDurations(new File(pathToRootOfProject + SUREFIRE_REPORTS_DIRECTORY));
+        checkExitCode(runGoals(
+                pathToRootOfProject,
+                new Properties(),
+                "clean",
+                "org.openclover:clover-maven-plugin:4.2.0:setup",
+                "test-compile"
+        ), pathToRootOfProject);
+        final File cloverRuntime = new File(localRepository, CLOVER_RUNTIME);
+        if (!cloverRuntime.exists()) {
+            throw new MojoExecutionException("Could not find the runtime of Clover in " + cloverRuntime.getAbsolutePath());
+        }
+        final List<List<String>> shards = split(testClassNames, durations, numberOfShards);
+        final ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        final List<Integer> exitCodes = new ArrayList<>();
+        try {
+            final List<Future<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                final Properties properties = getPropertiesToRun(shards.get(i));
+                properties.setProperty("maven.test.additionalClasspath", cloverRuntime.getAbsolutePath());
+                final String prefix = "[shard " + i + "] ";
+                futures.add(executor.submit(() -> runGoals(
+                        pathToRootOfProject,
+                        properties,
+                        prefix,
+                        Collections.emptyList(),
+                        Collections.singletonList("surefire:test")
+                )));
+            }
+            for (Future<Integer> future : futures) {
+                exitCodes.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        for (int i = 0; i < exitCodes.size(); i++) {
+            if (exitCodes.get(i) != 0) {
+                throw new MojoExecutionException("The shard " + i + " of " + pathToRootOfProject +
+                        " failed with the exit code " + exitCodes.get(i) + ", see the output above.");
+            }
+        }
+    }
+
+    /**
+     * Splits the given test classes into shards of balanced durations: the longest test classes first, each one
+     * in the shard that is the shortest so far.
+     *
+     * @param durations the duration of the test classes, the ones that are missing get the average duration
+     * @return at most numberOfShards shards, none of them empty unless there is no test class
+     */
+    static List<List<String>> split(Collection<String> testClassNames, Map<String, Double> durations, int numberOfShards) {
+        final double defaultDuration = durations.values().stream().mapToDouble(Double::doubleValue).average().orElse(1.0D);
+        final List<String> sortedTestClassNames = new ArrayList<>(testClassNames);
+        sortedTestClassNames.sort(Comparator.comparingDouble(
+                (String testClassName) -> durations.getOrDefault(testClassName, defaultDuration)).reversed()
         );
+        final int size = Math.max(1, Math.min(numberOfShards, sortedTestClassNames.size()));
+        final List<List<String>> shards = new ArrayList<>(size);
+        final double[] durationPerShard = new double[size];
+        for (int i = 0; i < size; i++) {
+            shards.add(new ArrayList<>());
+        }
+        for (String testClassName : sortedTestClassNames) {
+            int shortestShard = 0;
+            for (int i = 1; i < size; i++) {
+                if (durationPerShard[i] < durationPerShard[shortestShard]) {
+                    shortestShard = i;
+                }
+            }
+            shards.get(shortestShard).add(testClassName);
+            durationPerShard[shortestShard] += durations.getOrDefault(testClassName, defaultDuration);
+        }
+        return shards;
+    }
+
+    private static Properties getPropertiesToRun(Collection<String> testClassNames) {
+        final Properties properties = new Properties();
+        properties.setProperty("test", String.join(",", testClassNames));
+        properties.setProperty("failIfNoTests", "false");
+        properties.setProperty("failIfNoSpecifiedTests", "false");
+        properties.setProperty("surefire.failIfNoSpecifiedTests", "false");
+        return properties;
+    }
+
+    /**
+     * @throws MojoExecutionException if the given exit code of maven is not 0: the coverage of a build that failed is
+     *                                partial, and must not be read
+     */
+    private static void checkExitCode(int exitCode, String pathToRootOfProject) throws MojoExecutionException {
+        if (exitCode != 0) {
+            throw new MojoExecutionException("The build of " + pathToRootOfProject + " failed with the exit code " +
+                    exitCode + ", see the output above.");
+        }
     }
 
+    private int runGoals(String pathToRootOfProject, Properties additionalProperties, String... goals) {
+        return runGoals(pathToRootOfProject, additionalProperties, "", Collections.emptyList(), Arrays.asList(goals));
+    }
 
-    private int runGoals(String pathToRootOfProject, String... goals) {
+    /**
+     * @param outputPrefix prefix of each line of the output of maven, to tell apart concurrent invocations
+     * @param projects     the modules to build, with the modules they depend on, empty to build all of them
+     */
+    private int runGoals(String pathToRootOfProject,
+                         Properties additionalProperties,
+                         String outputPrefix,
+                         List<String> projects,
+                         List<String> goals) {
         InvocationRequest request = new DefaultInvocationRequest();
-        request.setGoals(Arrays.asList(goals));
+        request.setGoals(goals);
+        if (!projects.isEmpty()) {
+            request.setProjects(projects);
+            request.setAlsoMake(true);
+        }
         request.setPomFile(new File(pathToRootOfProject + FILE_SEPARATOR + POM_FILE));
         request.setJavaHome(new File(System.getProperty("java.home")));
 
@@ -56,12 +325,13 @@ public class CloverExecutor {
         properties.setProperty("findbugs.skip", "true");
         properties.setProperty("gpg.skip", "true");
         properties.setProperty("jacoco.skip", "true");
+        properties.putAll(additionalProperties);
         request.setProperties(properties);
 
         Invoker invoker = new DefaultInvoker();
         invoker.setMavenHome(new File(mavenHome));
-        invoker.setOutputHandler(System.out::println);
-        invoker.setErrorHandler(System.err::println);
+        invoker.setOutputHandler(line -> System.out.println(outputPrefix + line));
+        invoker.setErrorHandler(line -> System.err.println(outputPrefix + line));
         try {
             return invoker.execute(request).getExitCode();
         } catch (MavenInvocationException e) {
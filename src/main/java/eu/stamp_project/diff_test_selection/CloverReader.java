@@ -1,12 +1,18 @@
 package eu.stamp_project.diff_test_selection;
 
 import com.atlassian.clover.reporters.html.HtmlReporter;
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.List;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
 
 /**
  * Created by Benjamin DANGLOT
@@ -19,26 +25,76 @@ public class CloverReader {
 
     private static final String DATABASE_FILE = "/clover.db";
 
-    private static final String REPORT_DIRECTORY = "/report/";
+    private static final String REPORT_DIRECTORY_PREFIX = "report";
 
-    public volatile static Map<String, Map<String, Map<String, List<Integer>>>> coveragePerTestMethods = new LinkedHashMap<>();
+    /**
+     * coverage being collected by each running report, keyed by its output directory. The report renders its
+     * files on its own threads, that find the coverage to fill with {@link #getCoverage(File)}: Clover builds them
+     * itself, hence this lookup. Each {@link #read(String)} renders in its own temporary directory, so that the same
+     * project can be read again, or concurrently, in the same JVM.
+     */
+    private static final Map<String, InMemoryCoverageIndex> COVERAGE_PER_REPORT_DIRECTORY = new ConcurrentHashMap<>();
 
     /**
      * read the database initialize by {@link CloverExecutor}.
      *
      * @param directory
-     * @return a map, that associate test method names and the map of executed line in each classes
+     * @return the index that gives, for each line of each class, the test methods that execute it
      */
-    public Map<String, Map<String, Map<String, List<Integer>>>> read(String directory) {
+    public CoverageIndex read(String directory) {
         final File rootDirectoryOfCloverFiles = new File(directory + ROOT_DIRECTORY);
-        HtmlReporter.runReport(new String[]{
-                "-i", rootDirectoryOfCloverFiles.getAbsolutePath() + DATABASE_FILE,
-                "-o", rootDirectoryOfCloverFiles.getAbsolutePath() + REPORT_DIRECTORY,
-                "--lineinfo",
-                "--showinner",
-                "--showlambda",
-        });
-        return coveragePerTestMethods;
+        final File reportDirectory = createReportDirectory(rootDirectoryOfCloverFiles);
+        final String key = key(reportDirectory);
+        final InMemoryCoverageIndex coverage = new InMemoryCoverageIndex();
+        COVERAGE_PER_REPORT_DIRECTORY.put(key, coverage);
+        try {
+            HtmlReporter.runReport(new String[]{
+                    "-i", rootDirectoryOfCloverFiles.getAbsolutePath() + DATABASE_FILE,
+                    "-o", reportDirectory.getAbsolutePath(),
+                    "--lineinfo",
+                    "--showinner",
+                    "--showlambda",
+            });
+        } finally {
+            COVERAGE_PER_REPORT_DIRECTORY.remove(key);
+            delete(reportDirectory.toPath());
+        }
+        return coverage;
+    }
+
+    private static File createReportDirectory(File rootDirectoryOfCloverFiles) {
+        try {
+            return Files.createTempDirectory(rootDirectoryOfCloverFiles.toPath(), REPORT_DIRECTORY_PREFIX).toFile();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * deletes the rendered report, only its collected coverage is used
+     */
+    private static void delete(Path reportDirectory) {
+        try (Stream<Path> paths = Files.walk(reportDirectory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException ignored) {
+            // the report is in the build directory anyway
+        }
+    }
+
+    /**
+     * @param reportDirectory the output directory of a running report
+     * @return the coverage collected by this report, or null if the report has not been run by {@link #read(String)}
+     */
+    public static InMemoryCoverageIndex getCoverage(File reportDirectory) {
+        return COVERAGE_PER_REPORT_DIRECTORY.get(key(reportDirectory));
+    }
+
+    private static String key(File reportDirectory) {
+        try {
+            return reportDirectory.getCanonicalPath();
+        } catch (IOException e) {
+            return reportDirectory.getAbsolutePath();
+        }
     }
 
 }
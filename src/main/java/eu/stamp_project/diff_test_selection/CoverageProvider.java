@@ -0,0 +1,39 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import org.apache.maven.plugin.MojoExecutionException;
+
+import java.util.Set;
+
+/**
+ * Records and reads the coverage of each test method of a project.
+ */
+public interface CoverageProvider {
+
+    /**
+     * executes the tests of the project, recording the coverage of each test method
+     *
+     * @param pathToRootOfProject the directory of the project, that contains its pom.xml
+     * @throws MojoExecutionException if the tests could not be executed, e.g. if the build failed
+     */
+    void computeCoverage(String pathToRootOfProject) throws MojoExecutionException;
+
+    /**
+     * reads the coverage recorded by {@link #computeCoverage(String)}
+     *
+     * @param pathToRootOfProject the directory of the project, that contains its pom.xml
+     * @return the index that gives, for each line of each class, the test methods that execute it
+     */
+    CoverageIndex readCoverage(String pathToRootOfProject);
+
+    /**
+     * Same as {@link #readCoverage(String)}, but only the coverage of the given classes is needed: the providers
+     * that can, skip the others.
+     *
+     * @param classNames full qualified names of top-level classes
+     */
+    default CoverageIndex readCoverage(String pathToRootOfProject, Set<String> classNames) {
+        return this.readCoverage(pathToRootOfProject);
+    }
+
+}
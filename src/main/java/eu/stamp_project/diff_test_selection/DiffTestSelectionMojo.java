@@ -1,13 +1,24 @@
 package eu.stamp_project.diff_test_selection;
 
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndexFile;
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.MappedCoverageIndex;
+import eu.stamp_project.diff_test_selection.diff.FileDiff;
+import eu.stamp_project.diff_test_selection.diff.LineChangeDetector;
+import eu.stamp_project.diff_test_selection.diff.PatchApplier;
+import eu.stamp_project.diff_test_selection.diff.SpoonModelCache;
+import eu.stamp_project.diff_test_selection.diff.UnifiedDiffParser;
+import eu.stamp_project.diff_test_selection.report.BinaryReport;
 import eu.stamp_project.diff_test_selection.report.CSVReport;
+import eu.stamp_project.diff_test_selection.report.JSONReport;
 import eu.stamp_project.diff_test_selection.report.Report;
-import gumtree.spoon.AstComparator;
 import gumtree.spoon.diff.Diff;
 import gumtree.spoon.diff.operations.Operation;
 import org.apache.maven.monitor.logging.DefaultLog;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
@@ -16,30 +27,92 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import spoon.reflect.cu.CompilationUnit;
 import spoon.reflect.cu.SourcePosition;
+import spoon.reflect.code.CtBlock;
+import spoon.reflect.code.CtComment;
+import spoon.reflect.code.CtLocalVariable;
+import spoon.reflect.code.CtStatement;
 import spoon.reflect.declaration.CtElement;
+import spoon.reflect.declaration.CtExecutable;
+import spoon.reflect.declaration.ParentNotInitializedException;
 import spoon.reflect.declaration.CtType;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Mojo(name = "list")
 public class DiffTestSelectionMojo extends AbstractMojo {
 
+    private static final String JAVA_EXTENSION = ".java";
+
+    /**
+     * number of files of the diff that can wait to be compared, per thread
+     */
+    private static final int PENDING_FILES_PER_THREAD = 4;
+
+    private static final String CLOVER_DIRECTORY = "target/clover";
+
+    private static final String SOURCE_MANIFEST_FILE = "sources.sha256";
+
+
+    private static final String METRICS_SUFFIX = "_metrics.json";
+
+    /**
+     * number of the slowest changed files whose metrics are logged
+     */
+    private static final int LOGGED_FILES = 5;
+
     @Parameter(defaultValue = "${project}", required = true)
     private MavenProject project;
 
-    @Parameter(property = "pathToDiff", required = true)
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    @Parameter(defaultValue = "${settings.localRepository}", readonly = true)
+    private String localRepository;
+
+    /**
+     * selects the tests of all the modules of a multi-module project at once, from its root. Each module has its
+     * own coverage, and the modules that do not depend on a changed module are skipped.
+     */
+    @Parameter(property = "multiModule", defaultValue = "false")
+    private boolean multiModule;
+
+    /**
+     * mandatory, except for the serve goal, that receives the diffs from its clients
+     */
+    @Parameter(property = "pathToDiff")
     private String pathToDiff;
 
-    @Parameter(property = "pathToOtherVersion", required = true)
+    /**
+     * root of the version of the program with the changes applied. If it is not given, the changed files of this
+     * version are rebuilt in memory, by applying the diff on the files of the project.
+     */
+    @Parameter(property = "pathToOtherVersion")
     private String pathToOtherVersion;
 
     @Parameter(property = "outputPath", defaultValue = "testsThatExecuteTheChange.csv")
@@ -54,11 +127,97 @@ public class DiffTestSelectionMojo extends AbstractMojo {
     @Parameter(property = "skipCoverage")
     private boolean skipCoverage = false;
 
+    @Parameter(property = "coverageReader", defaultValue = "DATABASE")
+    private String coverageReader;
+
+    /**
+     * the tool that records the coverage of each test method. The shards, the incremental builds and the
+     * multi-module projects are only supported with Clover.
+     */
+    @Parameter(property = "coverageProvider", defaultValue = "CLOVER")
+    private String coverageProvider = "CLOVER";
+
+    @Parameter(property = "baselineCommit")
+    private String baselineCommit;
+
+    @Parameter(property = "changeDetection", defaultValue = "AST")
+    private String changeDetection;
+
+    @Parameter(property = "granularity", defaultValue = "LINE")
+    private String granularity;
+
+    /**
+     * maximum number of parsed models kept in memory
+     */
+    @Parameter(property = "modelCacheSize", defaultValue = "256")
+    private int modelCacheSize = 256;
+
+    /**
+     * directory where the parsed models are saved, to be reused by the next invocations. Empty to disable it.
+     */
+    @Parameter(property = "modelCacheDirectory", defaultValue = "")
+    private String modelCacheDirectory;
+
+    private SpoonModelCache spoonModelCache;
+
+    /**
+     * durations of the selected tests, keyed by the full qualified name of their class and their name separated by #
+     */
+    private Map<String, Double> durationPerSelectedTest = Collections.emptyMap();
+
+    /**
+     * metrics of the phases of the last selection
+     */
+    private SelectionMetrics metrics = new SelectionMetrics();
+
+    /**
+     * number of files compared at the same time, the number of available processors if not strictly positive
+     */
+    @Parameter(property = "parallelism", defaultValue = "0")
+    private int parallelism;
+
+    /**
+     * directory of the coverage indexes, outside of target by default, since the builds that compute the coverage
+     * start with a clean, and the indexes of the other baseline commits must survive them
+     */
+    @Parameter(property = "coverageIndexDirectory", defaultValue = "${project.basedir}/.diff-test-selection")
+    private String coverageIndexDirectory;
+
+    /**
+     * file of the history of the runs of the tests, outside of target by default, so it is kept across the builds,
+     * and independent of the coverage indexes. An empty value disables the history
+     */
+    @Parameter(property = "testHistoryFile", defaultValue = "${project.basedir}/.diff-test-selection-history.txt")
+    private String testHistoryFile;
+
+    /**
+     * number of concurrent invocations of maven that execute the tests to compute the coverage, 1 to execute them
+     * all in a single invocation
+     */
+    @Parameter(property = "shards", defaultValue = "1")
+    private int shards = 1;
+
+    /**
+     * the time available to run the selected tests, in seconds. The tests that give the most signal per second are
+     * kept, until the budget is spent. Not strictly positive for no budget.
+     */
+    @Parameter(property = "timeBudget", defaultValue = "0")
+    private double timeBudget;
+
+    /**
+     * keeps the instrumented build and the Clover database between runs, and only instruments and compiles again
+     * the sources that changed since the previous run, according to their hashes
+     */
+    @Parameter(property = "incremental", defaultValue = "false")
+    private boolean incremental;
+
     public DiffTestSelectionMojo() {
     }
 
-    private enum ReportEnum {
-        CSV(new CSVReport());
+    enum ReportEnum {
+        CSV(new CSVReport()),
+        JSON(new JSONReport()),
+        BINARY(new BinaryReport());
         public final Report instance;
 
         ReportEnum(Report instance) {
@@ -66,98 +225,663 @@ public class DiffTestSelectionMojo extends AbstractMojo {
         }
     }
 
-    private void checksArguments() {
-        this.pathToOtherVersion = checksIfExistAndUseAbsolutePath(this.pathToOtherVersion) + "/";
+    private enum ChangeDetectionEnum {
+        /**
+         * the line ranges of the hunks are mapped to the class that owns them, without building any model
+         */
+        LINES,
+        /**
+         * both versions of the changed files are compared with GumTree
+         */
+        AST,
+        /**
+         * the line ranges are used, except for the files where their mapping is ambiguous, which are compared with GumTree
+         */
+        HYBRID
+    }
+
+    private enum GranularityEnum {
+        /**
+         * selects the tests that execute one of the changed lines
+         */
+        LINE,
+        /**
+         * selects the tests that execute one of the methods that contain a change
+         */
+        METHOD,
+        /**
+         * selects the tests that execute one of the changed classes
+         */
+        CLASS
+    }
+
+    private enum CoverageReaderEnum {
+        DATABASE,
+        HTML
+    }
+
+    private enum CoverageProviderEnum {
+        /**
+         * instruments and compiles the sources with Clover before running the tests
+         */
+        CLOVER,
+        /**
+         * runs the tests with the on-the-fly agent of JaCoCo, and dumps its execution data after each test method
+         */
+        JACOCO
+    }
+
+    private void checksArguments() throws MojoExecutionException {
+        if (this.pathToDiff == null || this.pathToDiff.isEmpty()) {
+            throw new MojoExecutionException("pathToDiff is mandatory, please give the diff of the changes!");
+        }
+        if (this.pathToOtherVersion != null && !this.pathToOtherVersion.isEmpty()) {
+            this.pathToOtherVersion = checksIfExistAndUseAbsolutePath(this.pathToOtherVersion) + "/";
+        } else {
+            this.pathToOtherVersion = null;
+        }
         this.pathToDiff = checksIfExistAndUseAbsolutePath(this.pathToDiff) + "/";
     }
 
-    private String checksIfExistAndUseAbsolutePath(String pathFileToCheck) {
+    private String checksIfExistAndUseAbsolutePath(String pathFileToCheck) throws MojoExecutionException {
         final File file = new File(pathFileToCheck);
         if (!file.exists()) {
-            getLog().error(pathFileToCheck + " does not exist, please check it out!", new IllegalArgumentException(pathFileToCheck));
-            System.exit(1);
+            throw new MojoExecutionException(pathFileToCheck + " does not exist, please check it out!");
         }
         return file.getAbsolutePath();
     }
 
-    public void execute() throws MojoExecutionException {
-        checksArguments();
-        final Map<String, Map<String, Map<String, List<Integer>>>> coverage = getCoverage();
-        final Map<String, Set<String>> testThatExecuteChanges = this.getTestThatExecuteChanges(coverage);
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        final Map<String, Set<String>> testThatExecuteChanges = this.select();
+        if (testThatExecuteChanges == null) {
+            return;
+        }
         getLog().info("Saving result in " + this.project.getBasedir().getAbsolutePath() + "/" + this.outputPath + " ...");
-        ReportEnum.valueOf(this.report).instance.report(
-                getLog(),
-                this.project.getBasedir().getAbsolutePath() + "/" + this.outputPath,
-                testThatExecuteChanges
+        try (SelectionMetrics.Phase phase = this.metrics.start("report")) {
+            ReportEnum.valueOf(this.report).instance.report(
+                    getLog(),
+                    this.project.getBasedir().getAbsolutePath() + "/" + this.outputPath,
+                    testThatExecuteChanges,
+                    this.durationPerSelectedTest
+            );
+            phase.count("test methods", testThatExecuteChanges.values().stream().mapToInt(Set::size).sum());
+        }
+        this.writeMetrics();
+    }
+
+    /**
+     * writes the metrics of the last selection next to the report, suffixed by "_metrics.json", and logs them
+     */
+    protected void writeMetrics() {
+        final int indexOfExtension = this.outputPath.lastIndexOf('.');
+        final String metricsPath = (indexOfExtension > this.outputPath.lastIndexOf('/') ?
+                this.outputPath.substring(0, indexOfExtension) : this.outputPath) + METRICS_SUFFIX;
+        final File metricsFile = new File(this.project.getBasedir(), metricsPath);
+        this.metrics.log(getLog(), LOGGED_FILES);
+        getLog().info("Saving metrics in " + metricsFile.getAbsolutePath());
+        this.metrics.write(metricsFile);
+    }
+
+    protected SelectionMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * The diff is compared first, so the coverage is only loaded for the classes it changes, and not at all if it
+     * changes none.
+     *
+     * @return the test methods that execute the changes, per full qualified name of test class, or null if this
+     * module is skipped because the tests of all the modules are selected from the root
+     */
+    @Nullable
+    protected Map<String, Set<String>> select() throws MojoExecutionException {
+        if (this.multiModule && !this.project.isExecutionRoot()) {
+            getLog().info("Skipping " + this.project.getArtifactId() + ", the tests of all the modules are selected from the root.");
+            return null;
+        }
+        this.initialize();
+        final Map<String, List<Integer>> modifiedLinesPerQualifiedName;
+        try (SelectionMetrics.Phase phase = this.metrics.start("change detection")) {
+            modifiedLinesPerQualifiedName = this.getModifiedLinesPerQualifiedName();
+            phase.count("files", this.metrics.getNumberOfFiles())
+                    .count("operations", this.metrics.getOperationsOfFiles())
+                    .count("changed classes", modifiedLinesPerQualifiedName.size())
+                    .count("modified lines", modifiedLinesPerQualifiedName.values().stream().mapToInt(List::size).sum())
+                    .addAllocatedBytes(this.metrics.getAllocatedBytesOfFiles());
+        }
+        if (modifiedLinesPerQualifiedName.isEmpty()) {
+            getLog().info("The diff changes no class, no test is selected.");
+            return new LinkedHashMap<>();
+        }
+        final CoverageIndex coverage;
+        try (SelectionMetrics.Phase phase = this.metrics.start("coverage")) {
+            coverage = getCoverage(modifiedLinesPerQualifiedName.keySet());
+            phase.count("tests", coverage.getNumberOfTests())
+                    .count("covered classes", coverage.getCoveredClassNames().size());
+        }
+        try (SelectionMetrics.Phase phase = this.metrics.start("matching")) {
+            final Map<String, Set<String>> testThatExecuteChanges = this.matchChangedWithCoverage(coverage, modifiedLinesPerQualifiedName);
+            phase.count("selected tests", testThatExecuteChanges.values().stream().mapToInt(Set::size).sum())
+                    .count("selected test classes", testThatExecuteChanges.size());
+            return testThatExecuteChanges;
+        }
+    }
+
+    /**
+     * checks the arguments, resets the metrics, and creates the cache of the parsed models if it does not exist yet
+     */
+    void initialize() throws MojoExecutionException {
+        checksArguments();
+        this.metrics = new SelectionMetrics();
+        if (this.spoonModelCache == null) {
+            this.spoonModelCache = new SpoonModelCache(this.modelCacheSize,
+                    this.modelCacheDirectory == null || this.modelCacheDirectory.isEmpty() ? null : new File(this.modelCacheDirectory)
+            );
+        }
+    }
+
+    protected MavenProject getProject() {
+        return this.project;
+    }
+
+    protected boolean isMultiModule() {
+        return this.multiModule;
+    }
+
+    /**
+     * @return the durations of the tests selected by the last call to {@link #select()}, keyed by the full qualified
+     * name of their class and their name separated by #
+     */
+    protected Map<String, Double> getDurationPerSelectedTest() {
+        return this.durationPerSelectedTest;
+    }
+
+    /**
+     * @param changedClassNames the full qualified names of the changed classes. When the coverage is not saved in an
+     *                          index, only the coverage of these classes is read. Null to read the coverage of all
+     *                          the classes.
+     */
+    protected CoverageIndex getCoverage(@Nullable Set<String> changedClassNames) throws MojoExecutionException {
+        if (this.multiModule) {
+            if (CoverageProviderEnum.valueOf(this.coverageProvider) != CoverageProviderEnum.CLOVER) {
+                getLog().warn("Multi-module projects are only supported with Clover, it is used instead of " + this.coverageProvider);
+                this.coverageProvider = CoverageProviderEnum.CLOVER.name();
+            }
+            return this.getCoverageOfModules(changedClassNames);
+        }
+        final File coverageIndexFile = this.getCoverageIndexFile(this.project.getBasedir(), "");
+        if (coverageIndexFile != null && coverageIndexFile.exists()) {
+            getLog().info("Using the coverage index " + coverageIndexFile.getAbsolutePath());
+            try (SelectionMetrics.Phase ignored = this.metrics.start("coverage index")) {
+                return MappedCoverageIndex.open(coverageIndexFile);
+            }
+        }
+        final CoverageIndex coverage;
+        if (CoverageProviderEnum.valueOf(this.coverageProvider) != CoverageProviderEnum.CLOVER) {
+            if (this.shards > 1 || this.incremental) {
+                getLog().warn("The shards and the incremental builds are only supported with Clover, they are ignored.");
+            }
+            final CoverageProvider provider = this.getCoverageProvider(this.getNumberOfThreads());
+            if (!skipCoverage) {
+                getLog().info("Computing coverage for " + this.project.getBasedir().getAbsolutePath() + " with " + this.coverageProvider);
+                try (SelectionMetrics.Phase ignored = this.metrics.start("test execution")) {
+                    provider.computeCoverage(this.project.getBasedir().getAbsolutePath());
+                }
+            }
+            try (SelectionMetrics.Phase ignored = this.metrics.start("coverage reading")) {
+                coverage = provider.readCoverage(
+                        this.project.getBasedir().getAbsolutePath(),
+                        coverageIndexFile == null ? changedClassNames : null
+                );
+            }
+        } else {
+            if (!skipCoverage && this.shards > 1) {
+                try (SelectionMetrics.Phase ignored = this.metrics.start("test execution")) {
+                    this.computeCoverageInShards();
+                }
+            } else if (!skipCoverage && this.incremental) {
+                try (SelectionMetrics.Phase ignored = this.metrics.start("test execution")) {
+                    this.computeCoverageIncrementally();
+                }
+            } else if (!skipCoverage) {
+                getLog().info("Computing coverage for " + this.project.getBasedir().getAbsolutePath());
+                try (SelectionMetrics.Phase ignored = this.metrics.start("test execution")) {
+                    this.getCoverageProvider(this.getNumberOfThreads()).computeCoverage(this.project.getBasedir().getAbsolutePath());
+                }
+            }
+            try (SelectionMetrics.Phase ignored = this.metrics.start("coverage reading")) {
+                coverage = this.readCoverage(
+                        this.project.getBasedir().getAbsolutePath(),
+                        this.getNumberOfThreads(),
+                        coverageIndexFile == null ? changedClassNames : null
+                );
+            }
+        }
+        if (coverageIndexFile != null && coverage.getNumberOfTests() == 0) {
+            // an empty index would be used as is by all the next selections of this commit
+            getLog().warn("No coverage has been recorded, the coverage index is not saved.");
+        } else if (coverageIndexFile != null) {
+            getLog().info("Saving the coverage index in " + coverageIndexFile.getAbsolutePath());
+            try (SelectionMetrics.Phase ignored = this.metrics.start("coverage index writing")) {
+                CoverageIndexFile.write(coverage, this.baselineCommit, coverageIndexFile);
+            }
+        }
+        return coverage;
+    }
+
+    /**
+     * Computes the coverage reusing the instrumented build of the previous run, given the hashes of the sources and
+     * of the build files, i.e. the POMs and the resources, it has been built from. If nothing changed since, its
+     * coverage is reused as is. If test sources only have been added or modified, the test classes are compiled again,
+     * all of them, since the compiler does not know which ones depend on the changed ones, e.g. through an inlined
+     * constant, but the classes under test are kept. Otherwise, e.g. if a source under test changed, whose
+     * dependents would keep its old signatures or constants, if sources have been deleted, whose classes would
+     * remain, or if a build file changed, e.g. the version of a dependency, the whole project is built again.
+     * The manifest of the sources is deleted before the build, and written again only if the build succeeded, so the
+     * recordings of a failed build are never reused.
+     */
+    private void computeCoverageIncrementally() throws MojoExecutionException {
+        final File basedir = this.project.getBasedir();
+        final File cloverDirectory = new File(basedir, CLOVER_DIRECTORY);
+        final File manifestFile = new File(cloverDirectory, SOURCE_MANIFEST_FILE);
+        final Map<String, String> testHashPerPath = SourceManifest.compute(basedir, this.project.getTestCompileSourceRoots());
+        final Map<String, String> hashPerPath = SourceManifest.compute(basedir, this.project.getCompileSourceRoots());
+        hashPerPath.putAll(SourceManifest.computeAll(basedir, this.getBuildFiles()));
+        hashPerPath.putAll(testHashPerPath);
+        final Map<String, String> previousHashPerPath = SourceManifest.read(manifestFile);
+        final CloverExecutor cloverExecutor = new CloverExecutor();
+        final boolean reusable = previousHashPerPath != null && hashPerPath.equals(previousHashPerPath) &&
+                CloverExecutor.hasCoverageRecordings(cloverDirectory);
+        if (!reusable && manifestFile.exists() && !manifestFile.delete()) {
+            throw new RuntimeException("Could not delete " + manifestFile.getAbsolutePath());
+        }
+        if (previousHashPerPath == null || !new File(cloverDirectory, "clover.db").exists() ||
+                !hashPerPath.keySet().containsAll(previousHashPerPath.keySet()) ||
+                hashPerPath.keySet().stream()
+                        .filter(path -> !hashPerPath.get(path).equals(previousHashPerPath.get(path)))
+                        .anyMatch(path -> !testHashPerPath.containsKey(path))) {
+            getLog().info("Computing coverage for " + basedir.getAbsolutePath());
+            cloverExecutor.instrumentAndRunTest(basedir.getAbsolutePath());
+        } else if (reusable) {
+            getLog().info("No source changed since the previous run, reusing its coverage.");
+            return;
+        } else {
+            final long numberOfChangedSources = hashPerPath.keySet().stream()
+                    .filter(path -> !hashPerPath.get(path).equals(previousHashPerPath.get(path)))
+                    .count();
+            getLog().info("Computing coverage for " + basedir.getAbsolutePath() + ", " + numberOfChangedSources + " test sources changed since the previous run");
+            cloverExecutor.instrumentAndRunTestIncrementally(basedir.getAbsolutePath());
+        }
+        SourceManifest.write(hashPerPath, manifestFile);
+    }
+
+    /**
+     * @return the POMs of the project and of its parents, and its resource roots
+     */
+    private List<File> getBuildFiles() {
+        final List<File> buildFiles = new ArrayList<>();
+        for (MavenProject current = this.project; current != null && current.getFile() != null; current = current.getParent()) {
+            buildFiles.add(current.getFile());
+        }
+        this.project.getResources().forEach(resource -> buildFiles.add(new File(resource.getDirectory())));
+        this.project.getTestResources().forEach(resource -> buildFiles.add(new File(resource.getDirectory())));
+        return buildFiles;
+    }
+
+    /**
+     * executes the test classes of the project in shards, on the same instrumented build. The coverage of all the
+     * shards is recorded next to the Clover database of the project, and read as the one of a single run.
+     */
+    private void computeCoverageInShards() throws MojoExecutionException {
+        final List<String> testClassNames = this.getTestClassNames();
+        getLog().info("Computing coverage for " + this.project.getBasedir().getAbsolutePath() +
+                " with " + testClassNames.size() + " test classes in " + this.shards + " shards");
+        new CloverExecutor().instrumentAndRunTestsInShards(
+                this.project.getBasedir().getAbsolutePath(),
+                testClassNames,
+                this.shards,
+                new File(this.localRepository)
         );
     }
 
-    private Map<String, Map<String, Map<String, List<Integer>>>> getCoverage() {
-        if (!skipCoverage) {
-            getLog().info("Computing coverage for " + this.project.getBasedir().getAbsolutePath());
-            new CloverExecutor().instrumentAndRunTest(this.project.getBasedir().getAbsolutePath());
+    /**
+     * @return the full qualified names of the test classes of the project, i.e. the classes of the test source
+     * roots that match the default includes of surefire
+     */
+    private List<String> getTestClassNames() {
+        final List<String> testClassNames = new ArrayList<>();
+        for (String testSourceRoot : this.project.getTestCompileSourceRoots()) {
+            final Path root = new File(testSourceRoot).toPath();
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try (Stream<Path> paths = Files.walk(root)) {
+                paths.map(path -> root.relativize(path).toString().replace(File.separatorChar, '/'))
+                        .filter(path -> path.endsWith(JAVA_EXTENSION))
+                        .map(path -> path.substring(0, path.length() - JAVA_EXTENSION.length()))
+                        .filter(DiffTestSelectionMojo::isTestClass)
+                        .map(path -> path.replace('/', '.'))
+                        .forEach(testClassNames::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
-        return new CloverReader().read(this.project.getBasedir().getAbsolutePath());
+        return testClassNames;
     }
 
-    private Map<String, Set<String>> getTestThatExecuteChanges(Map<String, Map<String, Map<String, List<Integer>>>> coverage) {
-        final Map<String, Set<String>> testMethodPerTestClasses = new LinkedHashMap<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(new File(pathToDiff)))) {
-            String currentLine = null;
-            while ((currentLine = reader.readLine()) != null) {
-                if (currentLine.startsWith("+++") || currentLine.startsWith("---")) {
-                    Map<String, List<Integer>> modifiedLinesPerQualifiedName =
-                            getModifiedLinesPerQualifiedName(currentLine, reader.readLine());
-                    if (modifiedLinesPerQualifiedName == null) {
-                        continue;
-                    }
-                    Map<String, Set<String>> matchedChangedWithCoverage = matchChangedWithCoverage(coverage, modifiedLinesPerQualifiedName);
-                    matchedChangedWithCoverage.keySet().forEach(key -> {
-                        if (!testMethodPerTestClasses.containsKey(key)) {
-                            testMethodPerTestClasses.put(key, matchedChangedWithCoverage.get(key));
-                        } else {
-                            testMethodPerTestClasses.get(key).addAll(matchedChangedWithCoverage.get(key));
-                        }
-                    });
+    private static boolean isTestClass(String path) {
+        final String simpleName = path.substring(path.lastIndexOf('/') + 1);
+        return !simpleName.contains("$") && (simpleName.startsWith("Test") ||
+                simpleName.endsWith("Test") ||
+                simpleName.endsWith("Tests") ||
+                simpleName.endsWith("TestCase"));
+    }
+
+    /**
+     * Computes the coverage of the changed modules only: the tests that can execute a changed class are in the
+     * module of this class or in the modules that depend on it. The other modules are neither built nor read.
+     * Each changed module has its own coverage index, they are read in parallel and merged.
+     */
+    private CoverageIndex getCoverageOfModules(Set<String> changedClassNames) throws MojoExecutionException {
+        final Reactor reactor = new Reactor(this.project, this.reactorProjects);
+        final Set<MavenProject> changedModules = new LinkedHashSet<>();
+        for (String changedPath : this.getChangedPaths()) {
+            final MavenProject module = reactor.getModule(changedPath);
+            if (module != null) {
+                changedModules.add(module);
+            }
+        }
+        final InMemoryCoverageIndex coverage = new InMemoryCoverageIndex();
+        if (changedModules.isEmpty()) {
+            return coverage;
+        }
+        final Set<MavenProject> affectedModules = reactor.getDependents(changedModules);
+        getLog().info(changedModules.size() + " changed modules, " + affectedModules.size() + " modules to test, " +
+                (this.reactorProjects.size() - affectedModules.size()) + " modules skipped.");
+        final boolean hasMissingIndex = changedModules.stream().anyMatch(module -> {
+            final File coverageIndexFile = this.getCoverageIndexFile(module.getBasedir(), reactor.getRelativePath(module));
+            return coverageIndexFile == null || !coverageIndexFile.exists();
+        });
+        if (hasMissingIndex && !skipCoverage) {
+            getLog().info("Computing coverage for " + affectedModules.size() + " modules");
+            try (SelectionMetrics.Phase ignored = this.metrics.start("test execution")) {
+                new CloverExecutor().instrumentAndRunTestsOfModules(
+                        this.project.getBasedir().getAbsolutePath(),
+                        affectedModules.stream()
+                                .map(reactor::getRelativePath)
+                                .map(path -> path.isEmpty() ? "." : path)
+                                .collect(Collectors.toList())
+                );
+            }
+        }
+        final int numberOfThreads = Math.min(this.getNumberOfThreads(), changedModules.size());
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            final List<Future<CoverageIndex>> futures = new ArrayList<>();
+            for (MavenProject module : changedModules) {
+                futures.add(executor.submit(() -> this.getCoverageOfModule(
+                        module,
+                        reactor.getRelativePath(module),
+                        Math.max(1, this.getNumberOfThreads() / numberOfThreads),
+                        changedClassNames
+                )));
+            }
+            for (Future<CoverageIndex> future : futures) {
+                coverage.addAll(future.get(), Collections.emptySet(), Collections.emptySet());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return coverage;
+    }
+
+    private CoverageIndex getCoverageOfModule(MavenProject module,
+                                              String relativePath,
+                                              int numberOfThreads,
+                                              Set<String> changedClassNames) {
+        final File coverageIndexFile = this.getCoverageIndexFile(module.getBasedir(), relativePath);
+        if (coverageIndexFile != null && coverageIndexFile.exists()) {
+            getLog().info("Using the coverage index " + coverageIndexFile.getAbsolutePath());
+            try (SelectionMetrics.Phase ignored = this.metrics.start("coverage index")) {
+                return MappedCoverageIndex.open(coverageIndexFile);
+            }
+        }
+        final CoverageIndex coverage;
+        try (SelectionMetrics.Phase ignored = this.metrics.start("coverage reading")) {
+            coverage = this.readCoverage(
+                    module.getBasedir().getAbsolutePath(),
+                    numberOfThreads,
+                    coverageIndexFile == null ? changedClassNames : null
+            );
+        }
+        if (coverageIndexFile != null && coverage.getNumberOfTests() == 0) {
+            getLog().warn("No coverage has been recorded for " + module.getBasedir().getAbsolutePath() + ", the coverage index is not saved.");
+        } else if (coverageIndexFile != null) {
+            getLog().info("Saving the coverage index in " + coverageIndexFile.getAbsolutePath());
+            try (SelectionMetrics.Phase ignored = this.metrics.start("coverage index writing")) {
+                CoverageIndexFile.write(coverage, this.baselineCommit, coverageIndexFile);
+            }
+        }
+        return coverage;
+    }
+
+    /**
+     * @return the paths of the files that are changed by the diff, relative to the root of the diff
+     */
+    private Set<String> getChangedPaths() {
+        final Set<String> changedPaths = new LinkedHashSet<>();
+        try (UnifiedDiffParser parser = new UnifiedDiffParser(new FileReader(new File(pathToDiff)))) {
+            while (parser.hasNext()) {
+                final FileDiff fileDiff = parser.next();
+                if (fileDiff.getOldPath() != null) {
+                    changedPaths.add(fileDiff.getOldPath());
+                }
+                if (fileDiff.getNewPath() != null) {
+                    changedPaths.add(fileDiff.getNewPath());
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return changedPaths;
+    }
+
+    /**
+     * @param classNames the classes whose coverage is read, null to read the coverage of all the classes, e.g. to
+     *                   save it in an index
+     */
+    private CoverageIndex readCoverage(String directory, int numberOfThreads, @Nullable Set<String> classNames) {
+        final CoverageProvider provider = this.getCoverageProvider(numberOfThreads);
+        return classNames == null ? provider.readCoverage(directory) : provider.readCoverage(directory, classNames);
+    }
+
+    private CoverageProvider getCoverageProvider(int numberOfThreads) {
+        switch (CoverageProviderEnum.valueOf(this.coverageProvider)) {
+            case JACOCO:
+                return new JacocoCoverageProvider(numberOfThreads, this.project.getProperties().getProperty("argLine"));
+            case CLOVER:
+            default:
+                return new CloverCoverageProvider(
+                        CoverageReaderEnum.valueOf(this.coverageReader) == CoverageReaderEnum.HTML,
+                        numberOfThreads
+                );
+        }
+    }
+
+    private int getNumberOfThreads() {
+        return this.parallelism > 0 ? this.parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @param basedir      the directory of the project, or of the module, whose coverage is indexed
+     * @param relativePath the path of the module relative to the root, in which its index is stored, empty for the root
+     * @return the file of the coverage index of the baseline commit, or null if the index cannot be used,
+     * i.e. there is no index directory, or the baseline commit is not given and cannot be obtained from git
+     */
+    @Nullable
+    private synchronized File getCoverageIndexFile(File basedir, String relativePath) {
+        if (this.coverageIndexDirectory == null || this.coverageIndexDirectory.isEmpty()) {
+            return null;
+        }
+        if (this.baselineCommit == null || this.baselineCommit.isEmpty()) {
+            this.baselineCommit = GitUtils.getHeadCommit(basedir);
+            if (this.baselineCommit == null) {
+                getLog().warn("Could not find the baseline commit, the coverage index will not be used.");
+                return null;
+            }
+        }
+        File directory = new File(this.coverageIndexDirectory);
+        if (!directory.isAbsolute()) {
+            directory = new File(this.project.getBasedir(), this.coverageIndexDirectory);
+        }
+        if (!relativePath.isEmpty()) {
+            directory = new File(directory, relativePath);
+        }
+        return CoverageIndexFile.getIndexFile(directory, this.baselineCommit);
+    }
+
+    private Map<String, List<Integer>> getModifiedLinesPerQualifiedName() {
+        try (UnifiedDiffParser parser = new UnifiedDiffParser(new FileReader(new File(pathToDiff)))) {
+            return this.getModifiedLinesPerQualifiedName(parser);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Computes the modified lines of each file on a bounded pool of threads, while the diff is parsed.
+     * The number of files waiting to be compared is bounded too, so the diff is never fully loaded in memory.
+     * The modified lines are merged by the calling thread, in the order of the diff, so the result is deterministic.
+     * The comparison of each file is recorded in the metrics of the selection.
+     *
+     * @param fileDiffs the changes of each file of the diff
+     * @return the modified lines per full qualified name of all the changed files
+     */
+    Map<String, List<Integer>> getModifiedLinesPerQualifiedName(Iterator<FileDiff> fileDiffs) {
+        final Map<String, List<Integer>> modifiedLinesPerQualifiedName = new LinkedHashMap<>();
+        final int numberOfThreads = this.getNumberOfThreads();
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            final Deque<Future<Map<String, List<Integer>>>> futures = new ArrayDeque<>();
+            while (fileDiffs.hasNext()) {
+                final FileDiff fileDiff = fileDiffs.next();
+                futures.add(executor.submit(() -> {
+                    final SelectionMetrics.FileMetrics fileMetrics = this.metrics.getFileMetrics(
+                            fileDiff.getOldPath() == null ? fileDiff.getNewPath() : fileDiff.getOldPath()
+                    );
+                    final long startTime = System.nanoTime();
+                    final long startAllocatedBytes = SelectionMetrics.getAllocatedBytes();
+                    final Map<String, List<Integer>> modifiedLinesOfFile = getModifiedLinesPerQualifiedName(fileDiff, fileMetrics);
+                    this.metrics.endFile(fileMetrics, startTime, startAllocatedBytes, modifiedLinesOfFile == null ? 0 :
+                            modifiedLinesOfFile.values().stream().mapToInt(List::size).sum());
+                    return modifiedLinesOfFile;
+                }));
+                if (futures.size() > numberOfThreads * PENDING_FILES_PER_THREAD) {
+                    merge(futures.poll().get(), modifiedLinesPerQualifiedName);
+                }
+            }
+            while (!futures.isEmpty()) {
+                merge(futures.poll().get(), modifiedLinesPerQualifiedName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return modifiedLinesPerQualifiedName;
+    }
+
+    private void merge(@Nullable Map<String, List<Integer>> modifiedLinesOfFile,
+                       Map<String, List<Integer>> modifiedLinesPerQualifiedName) {
+        if (modifiedLinesOfFile == null) {
+            return;
         }
-        return testMethodPerTestClasses;
+        modifiedLinesOfFile.keySet().forEach(key -> {
+            if (!modifiedLinesPerQualifiedName.containsKey(key)) {
+                modifiedLinesPerQualifiedName.put(key, modifiedLinesOfFile.get(key));
+            } else {
+                modifiedLinesPerQualifiedName.get(key).addAll(modifiedLinesOfFile.get(key));
+            }
+        });
     }
 
     @Nullable
-    private Map<String, List<Integer>> getModifiedLinesPerQualifiedName(String currentLine,
-                                                                        String secondLine) throws Exception {
+    private Map<String, List<Integer>> getModifiedLinesPerQualifiedName(FileDiff fileDiff, SelectionMetrics.FileMetrics fileMetrics) {
+        if (fileDiff.isBinary() || fileDiff.getOldPath() == null || !fileDiff.getOldPath().endsWith(JAVA_EXTENSION)) {
+            // new files, and files that are not java sources, are not executed by the current tests
+            return null;
+        }
+        fileMetrics.setOperations(fileDiff.getHunks().size());
         final File baseDir = project.getBasedir();
-        final String file1 = getCorrectPathFile(currentLine);
-        final String file2 = getCorrectPathFile(secondLine);
-        if (!file2.endsWith(file1)) {
-            getLog().warn("Could not match " + file1 + " and " + file2);
+        final File f1 = getCorrectFile(baseDir.getAbsolutePath(), fileDiff.getOldPath());
+        final ChangeDetectionEnum changeDetection = ChangeDetectionEnum.valueOf(this.changeDetection);
+        if (fileDiff.getType() == FileDiff.Type.DELETED) {
+            // there is no other version to compare with, all the lines of the file are removed
+            return new LineChangeDetector().getModifiedLinesPerQualifiedName(f1, fileDiff, true);
+        }
+        if (changeDetection != ChangeDetectionEnum.AST) {
+            final Map<String, List<Integer>> modifiedLinesPerQualifiedName = new LineChangeDetector()
+                    .getModifiedLinesPerQualifiedName(f1, fileDiff, changeDetection == ChangeDetectionEnum.LINES);
+            if (modifiedLinesPerQualifiedName != null) {
+                return modifiedLinesPerQualifiedName;
+            }
+            getLog().debug("The changed lines of " + f1 + " are ambiguous, comparing the ASTs.");
+        }
+        if (this.pathToOtherVersion == null) {
+            return this.getModifiedLinesPerQualifiedNameFromPatch(f1, fileDiff, fileMetrics);
+        }
+        final File f2 = getCorrectFile(this.pathToOtherVersion, fileDiff.getNewPath());
+        try {
+            return buildMap(this.spoonModelCache.compare(f1, f2), fileMetrics);
+        } catch (Exception e) {
+            getLog().error("Error when trying to compare " + f1 + " and " + f2, e);
             return null;
         }
-        final File f1 = getCorrectFile(baseDir.getAbsolutePath(), file1);
-        final File f2 = getCorrectFile(this.pathToOtherVersion, file2);
+    }
+
+    /**
+     * compares the given file with its new version, rebuilt in memory by applying the changes on it
+     */
+    @Nullable
+    private Map<String, List<Integer>> getModifiedLinesPerQualifiedNameFromPatch(File f1, FileDiff fileDiff, SelectionMetrics.FileMetrics fileMetrics) {
         try {
-            return buildMap(new AstComparator().compare(f1, f2));
+            final String oldContent = new String(Files.readAllBytes(f1.toPath()), StandardCharsets.UTF_8);
+            final String newContent = new PatchApplier().apply(oldContent, fileDiff);
+            final String newName = new File(fileDiff.getNewPath()).getName();
+            return buildMap(this.spoonModelCache.compare(f1.getName(), oldContent, newName, newContent), fileMetrics);
         } catch (Exception e) {
-            e.printStackTrace();
-            getLog().error("Error when trying to compare " + f1 + " and " + f2);
+            getLog().error("Error when trying to compare " + f1 + " and its patched version", e);
             return null;
         }
     }
 
+    /**
+     * @param baseDir  root of one of the versions
+     * @param fileName path of a file in the diff, relative to the root of the diff
+     * @return the file in the given version. If the diff has been made from the parent of the project, e.g. with
+     * "diff -ru", the path is resolved from the parent of the root
+     */
     private File getCorrectFile(String baseDir, String fileName) {
-        if (fileName.substring(1).startsWith(this.module)) {
-            fileName = fileName.substring(this.module.length() + 1);
+        final String module = this.module == null ? "" : this.module.endsWith("/") ?
+                this.module.substring(0, this.module.length() - 1) : this.module;
+        if (!module.isEmpty() && fileName.startsWith(module + "/")) {
+            fileName = fileName.substring(module.length() + 1);
         }
         final File file = new File(baseDir + "/" + fileName);
         return file.exists() ? file : new File(baseDir + "/../" + fileName);
     }
 
     @NotNull
-    private Map<String, List<Integer>> buildMap(Diff compare) {
+    private Map<String, List<Integer>> buildMap(Diff compare, SelectionMetrics.FileMetrics fileMetrics) {
+        fileMetrics.setOperations(compare.getAllOperations().size());
         Map<String, List<Integer>> modifiedLinesPerQualifiedName = new LinkedHashMap<>();// keeps the order
         for (Operation operation : compare.getAllOperations()) {
             final CtElement srcNode = operation.getSrcNode();
@@ -180,49 +904,205 @@ public class DiffTestSelectionMojo extends AbstractMojo {
             if (!modifiedLinesPerQualifiedName.containsKey(qualifiedName)) {
                 modifiedLinesPerQualifiedName.put(qualifiedName, new ArrayList<>());
             }
-            modifiedLinesPerQualifiedName.get(qualifiedName).add(position.getLine());
+            modifiedLinesPerQualifiedName.get(qualifiedName).add(this.getModifiedLine(srcNode, position));
         }
         return modifiedLinesPerQualifiedName;
     }
 
-    private Map<String, Set<String>> matchChangedWithCoverage(Map<String, Map<String, Map<String, List<Integer>>>> coverage,
-                                                              Map<String, List<Integer>> modifiedLinesPerQualifiedName) {
-        Map<String, Set<String>> testClassNamePerTestMethodNamesThatCoverChanges = new LinkedHashMap<>();
-        for (String testClassKey : coverage.keySet()) {
-            for (String testMethodKey : coverage.get(testClassKey).keySet()) {
-                for (String targetClassName : coverage.get(testClassKey).get(testMethodKey).keySet()) {
-                    if (modifiedLinesPerQualifiedName.containsKey(targetClassName)) {
-                        for (Integer line : modifiedLinesPerQualifiedName.get(targetClassName)) {
-                            if (coverage.get(testClassKey).get(testMethodKey).get(targetClassName).contains(line)) {
-                                if (!testClassNamePerTestMethodNamesThatCoverChanges.containsKey(testClassKey)) {
-                                    testClassNamePerTestMethodNamesThatCoverChanges.put(testClassKey, new HashSet<>());
-                                }
-                                testClassNamePerTestMethodNamesThatCoverChanges.get(testClassKey).add(testMethodKey);
-                            }
-                        }
+    /**
+     * @return the line of the given changed element, or, at the method granularity, a line of its enclosing
+     * executable, which belongs to the method in the coverage even when the element itself, e.g. a deleted
+     * statement, has no line in it: the line of the first statement of its body that is compiled to bytecode, or
+     * the closing brace of an empty body. Clover gives a method the lines from its declaration to its closing brace,
+     * but JaCoCo only the lines that have bytecode, i.e. neither the declaration nor the opening brace
+     */
+    private int getModifiedLine(CtElement srcNode, SourcePosition position) {
+        if (GranularityEnum.valueOf(this.granularity) != GranularityEnum.METHOD) {
+            return position.getLine();
+        }
+        CtExecutable<?> executable;
+        try {
+            executable = srcNode instanceof CtExecutable ? (CtExecutable<?>) srcNode : srcNode.getParent(CtExecutable.class);
+        } catch (ParentNotInitializedException e) {
+            executable = null;
+        }
+        if (executable == null) {
+            return position.getLine();
+        }
+        final CtBlock<?> body = executable.getBody();
+        if (body != null && isInSource(body)) {
+            for (CtStatement statement : body.getStatements()) {
+                if (hasBytecode(statement)) {
+                    return statement.getPosition().getLine();
+                }
+            }
+            return body.getPosition().getEndLine();
+        }
+        final SourcePosition executablePosition = executable.getPosition();
+        return executablePosition != null && executablePosition.getCompilationUnit() != null ?
+                executablePosition.getLine() : position.getLine();
+    }
+
+    private static boolean isInSource(CtElement element) {
+        return !element.isImplicit() && element.getPosition() != null && element.getPosition().getCompilationUnit() != null;
+    }
+
+    /**
+     * @return true if the given statement has a line in the debug information of the compiled method, unlike e.g.
+     * comments, local classes and local variables without initializer
+     */
+    private static boolean hasBytecode(CtStatement statement) {
+        return isInSource(statement) &&
+                !(statement instanceof CtComment) &&
+                !(statement instanceof CtType) &&
+                !(statement instanceof CtLocalVariable && ((CtLocalVariable<?>) statement).getDefaultExpression() == null);
+    }
+
+    /**
+     * @return the tests that execute the changes, grouped by test class, by decreasing priority: the classes are
+     * ordered by their first test method
+     */
+    Map<String, Set<String>> matchChangedWithCoverage(CoverageIndex coverage,
+                                                      Map<String, List<Integer>> modifiedLinesPerQualifiedName) {
+        final GranularityEnum granularity = GranularityEnum.valueOf(this.granularity);
+        final boolean lineBased = ChangeDetectionEnum.valueOf(this.changeDetection) != ChangeDetectionEnum.AST;
+        final int[] numberOfChangesPerTest = new int[coverage.getNumberOfTests()];
+        final BitSet testsThatCoverChange = new BitSet(coverage.getNumberOfTests());
+        for (String targetClassName : modifiedLinesPerQualifiedName.keySet()) {
+            if (granularity == GranularityEnum.CLASS) {
+                testsThatCoverChange.clear();
+                addTestsThatExecuteClass(coverage, targetClassName, testsThatCoverChange);
+                count(testsThatCoverChange, numberOfChangesPerTest);
+                continue;
+            }
+            for (int line : new TreeSet<>(modifiedLinesPerQualifiedName.get(targetClassName))) {
+                testsThatCoverChange.clear();
+                if (granularity == GranularityEnum.METHOD) {
+                    addTestsThatExecuteMethods(coverage, targetClassName, line, testsThatCoverChange);
+                } else {
+                    set(testsThatCoverChange, coverage.getTestsThatExecute(targetClassName, line));
+                    if (lineBased && testsThatCoverChange.isEmpty()) {
+                        // the lines of the hunks are not the ones of the coverage, e.g. Clover only records the first
+                        // line of a statement, and neither the else nor the braces: the enclosing method is used
+                        addTestsThatExecuteMethods(coverage, targetClassName, line, testsThatCoverChange);
                     }
                 }
+                count(testsThatCoverChange, numberOfChangesPerTest);
+            }
+        }
+        final TestPrioritizer prioritizer = new TestPrioritizer(
+                coverage,
+                this.getTestHistory(),
+                this::getDurationPerTest
+        );
+        final int[] rankedTestIds = prioritizer.prioritize(numberOfChangesPerTest, this.timeBudget);
+        if (this.timeBudget > 0) {
+            final long numberOfSelectedTests = Arrays.stream(numberOfChangesPerTest).filter(number -> number > 0).count();
+            getLog().info(rankedTestIds.length + " of the " + numberOfSelectedTests + " tests that execute the changes fit in the time budget of " + this.timeBudget + " s");
+        }
+        Map<String, Set<String>> testClassNamePerTestMethodNamesThatCoverChanges = new LinkedHashMap<>();
+        this.durationPerSelectedTest = new LinkedHashMap<>();
+        for (int testId : rankedTestIds) {
+            testClassNamePerTestMethodNamesThatCoverChanges
+                    .computeIfAbsent(coverage.getTestClassName(testId), testClassName -> new LinkedHashSet<>())
+                    .add(coverage.getTestMethodName(testId));
+            final double duration = prioritizer.getDuration(testId);
+            if (duration != CoverageIndex.UNKNOWN_DURATION) {
+                this.durationPerSelectedTest.put(coverage.getTestClassName(testId) + "#" + coverage.getTestMethodName(testId), duration);
             }
         }
         return testClassNamePerTestMethodNamesThatCoverChanges;
     }
 
-    private String getCorrectPathFile(String path) {
-        final String s = path.split(" ")[1];
-        if (s.contains("\t")) {
-            return removeDiffPrefix(s.split("\t")[0]);
+    /**
+     * @return the durations of the test methods in the surefire reports of the previous run, keyed by the full
+     * qualified name of their class and their name, separated by #. All the reports are parsed, so it is only called
+     * for the selected tests that have a duration neither in the history nor in the coverage
+     */
+    protected Map<String, Double> getDurationPerTest() {
+        final Map<String, Double> durationPerTest = new HashMap<>();
+        SurefireReports.readTestCases(new File(this.project.getBasedir().getAbsolutePath() + CloverExecutor.SUREFIRE_REPORTS_DIRECTORY))
+                .forEach((test, result) -> durationPerTest.put(test, result.duration));
+        return durationPerTest;
+    }
+
+    TestHistory getTestHistory() {
+        return TestHistory.load(this.getTestHistoryFile());
+    }
+
+    /**
+     * @return the file of the history of the runs of the tests, or null if the history is disabled
+     */
+    @Nullable
+    protected File getTestHistoryFile() {
+        if (this.testHistoryFile == null || this.testHistoryFile.isEmpty()) {
+            return null;
         }
-        return removeDiffPrefix(s);
+        final File file = new File(this.testHistoryFile);
+        return file.isAbsolute() ? file : new File(this.project.getBasedir(), this.testHistoryFile);
     }
 
     /**
-     * removing the first letter, i.e. a and b;
+     * adds the results of the surefire reports to the history of the runs of the tests. The history is only fed by
+     * the runs of the tests without instrumentation, whose durations are the real ones: the runs that compute the
+     * coverage are not recorded.
      *
-     * @param s
-     * @return the string s without a or b at the begin, if there are present
+     * @param reports the reports written by the run, the other ones are older
      */
-    private String removeDiffPrefix(String s) {
-        return s.startsWith("a") || s.startsWith("b") ? s.substring(1) : s;
+    protected void recordTestResults(List<File> reports) {
+        final File historyFile = this.getTestHistoryFile();
+        if (historyFile == null) {
+            return;
+        }
+        final Map<String, SurefireReports.TestCaseResult> resultPerTest = SurefireReports.readTestCases(reports);
+        final TestHistory history = TestHistory.load(historyFile);
+        history.record(resultPerTest);
+        history.save(historyFile);
+    }
+
+    /**
+     * adds the tests that execute the methods that contain the given line. If the line is in no executed method,
+     * e.g. in a field initializer, it is matched against the line coverage.
+     */
+    private static void addTestsThatExecuteMethods(CoverageIndex coverage,
+                                                   String targetClassName,
+                                                   int line,
+                                                   BitSet testsThatCoverChange) {
+        final int[] methods = coverage.getExecutedMethods(targetClassName);
+        boolean inMethod = false;
+        // methods are sorted by start line, nested methods, e.g. lambdas, are all matched
+        for (int i = 0; i < methods.length && methods[i] <= line; i += 2) {
+            if (line <= methods[i + 1]) {
+                inMethod = true;
+                set(testsThatCoverChange, coverage.getTestsThatExecuteMethod(targetClassName, methods[i]));
+            }
+        }
+        if (!inMethod) {
+            set(testsThatCoverChange, coverage.getTestsThatExecute(targetClassName, line));
+        }
+    }
+
+    private static void addTestsThatExecuteClass(CoverageIndex coverage,
+                                                 String targetClassName,
+                                                 BitSet testsThatCoverChanges) {
+        final int numberOfLines = coverage.getNumberOfLines(targetClassName);
+        for (int line = 0; line < numberOfLines; line++) {
+            set(testsThatCoverChanges, coverage.getTestsThatExecute(targetClassName, line));
+        }
+        final int[] methods = coverage.getExecutedMethods(targetClassName);
+        for (int i = 0; i < methods.length; i += 2) {
+            set(testsThatCoverChanges, coverage.getTestsThatExecuteMethod(targetClassName, methods[i]));
+        }
+    }
+
+    private static void set(BitSet bitSet, int[] indexes) {
+        for (int index : indexes) {
+            bitSet.set(index);
+        }
+    }
+
+    private static void count(BitSet bitSet, int[] counts) {
+        bitSet.stream().forEach(index -> counts[index]++);
     }
 
     /*
@@ -249,6 +1129,70 @@ public class DiffTestSelectionMojo extends AbstractMojo {
         this.report = report;
     }
 
+    void setCoverageReader(String coverageReader) {
+        this.coverageReader = coverageReader;
+    }
+
+    void setCoverageProvider(String coverageProvider) {
+        this.coverageProvider = coverageProvider;
+    }
+
+    void setBaselineCommit(String baselineCommit) {
+        this.baselineCommit = baselineCommit;
+    }
+
+    void setCoverageIndexDirectory(String coverageIndexDirectory) {
+        this.coverageIndexDirectory = coverageIndexDirectory;
+    }
+
+    void setTestHistoryFile(String testHistoryFile) {
+        this.testHistoryFile = testHistoryFile;
+    }
+
+    void setChangeDetection(String changeDetection) {
+        this.changeDetection = changeDetection;
+    }
+
+    void setGranularity(String granularity) {
+        this.granularity = granularity;
+    }
+
+    void setModelCacheSize(int modelCacheSize) {
+        this.modelCacheSize = modelCacheSize;
+    }
+
+    void setModelCacheDirectory(String modelCacheDirectory) {
+        this.modelCacheDirectory = modelCacheDirectory;
+    }
+
+    void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    void setReactorProjects(List<MavenProject> reactorProjects) {
+        this.reactorProjects = reactorProjects;
+    }
+
+    void setMultiModule(boolean multiModule) {
+        this.multiModule = multiModule;
+    }
+
+    void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    void setTimeBudget(double timeBudget) {
+        this.timeBudget = timeBudget;
+    }
+
+    void setShards(int shards) {
+        this.shards = shards;
+    }
+
+    void setLocalRepository(String localRepository) {
+        this.localRepository = localRepository;
+    }
+
     public static void main(String[] args) {
         DiffTestSelectionMojo diffTestSelectionMojo = new DiffTestSelectionMojo();
         diffTestSelectionMojo.setPathToDiff("/home/bdanglot/workspace/bugs-dot-jar/commons-math/.bugs-dot-jar/developer-patch.diff");
@@ -260,9 +1204,12 @@ public class DiffTestSelectionMojo extends AbstractMojo {
         diffTestSelectionMojo.setLog(new DefaultLog(new ConsoleLogger(0, "logger")));
         diffTestSelectionMojo.setReport("CSV");
         diffTestSelectionMojo.setOutputPath("testsThatExecuteTheChange.csv");
+        diffTestSelectionMojo.setCoverageReader("DATABASE");
+        diffTestSelectionMojo.setChangeDetection("AST");
+        diffTestSelectionMojo.setGranularity("LINE");
         try {
             diffTestSelectionMojo.execute();
-        } catch (MojoExecutionException e) {
+        } catch (MojoExecutionException | MojoFailureException e) {
             e.printStackTrace();
         }
     }
@@ -0,0 +1,39 @@
+package eu.stamp_project.diff_test_selection;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Queries the git repository of the project, through the git command line.
+ */
+class GitUtils {
+
+    /**
+     * @param directory a directory inside a git repository
+     * @return the hash of the HEAD commit of the repository, or null if it cannot be obtained
+     */
+    @Nullable
+    static String getHeadCommit(File directory) {
+        try {
+            final Process process = new ProcessBuilder("git", "rev-parse", "HEAD")
+                    .directory(directory)
+                    .redirectErrorStream(true)
+                    .start();
+            final String commit;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                commit = reader.readLine();
+            }
+            return process.waitFor() == 0 && commit != null ? commit.trim() : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,344 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
+import eu.stamp_project.diff_test_selection.jacoco.JacocoRunListener;
+import eu.stamp_project.diff_test_selection.jacoco.JacocoTestExecutionListener;
+import eu.stamp_project.diff_test_selection.jacoco.PerTestCoverageRecorder;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.jacoco.agent.AgentJar;
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.CoverageBuilder;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.tools.ExecFileLoader;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Records the coverage of each test method with the on-the-fly agent of JaCoCo: the classes are instrumented
+ * when they are loaded by the JVMs of the tests, so the sources are neither instrumented nor compiled again.
+ * <p>
+ * A listener of the tests, see {@link JacocoTestExecutionListener}, dumps the execution data of the agent after
+ * each test method, in its own file. Each file is then analyzed against the compiled classes of the project,
+ * in parallel, and the lines and methods that have been executed are added to the index. As with Clover, the
+ * coverage of a class is given to the top-level class of its source file.
+ */
+public class JacocoCoverageProvider implements CoverageProvider {
+
+    private static final String OUTPUT_DIRECTORY = "/target/jacoco-per-test";
+
+    private static final String CLASSES_DIRECTORY = "/target/classes";
+
+    private static final String CLASS_EXTENSION = ".class";
+
+    private static final String JAVA_EXTENSION = ".java";
+
+    /**
+     * the entries of the plugin that are put on the classpath of the tests: the listeners, the recorder, and the
+     * registration of the listener of the JUnit Platform
+     */
+    private static final String[] LISTENER_ENTRIES = {
+            "eu/stamp_project/diff_test_selection/jacoco/",
+            "META-INF/services/org.junit.platform.launcher.TestExecutionListener"
+    };
+
+    private final int parallelism;
+
+    @Nullable
+    private final String argLine;
+
+    /**
+     * @param parallelism number of execution data files analyzed at the same time
+     * @param argLine     the JVM flags that the project gives to its tests through the argLine property, if any
+     */
+    public JacocoCoverageProvider(int parallelism, @Nullable String argLine) {
+        this.parallelism = Math.max(1, parallelism);
+        this.argLine = argLine;
+    }
+
+    /**
+     * runs the tests with the agent of JaCoCo, and the listener that dumps its execution data after each test
+     * method on their classpath. The agent is appended to the argLine property of the project, so a surefire
+     * configuration that gives its own argLine must reference this property, e.g. with @{argLine}.
+     *
+     * @throws MojoExecutionException if the build failed, or if tests ran but the listener never dumped their
+     *                                execution data, e.g. with the JUnit 4 provider of surefire without the listener
+     */
+    @Override
+    public void computeCoverage(String pathToRootOfProject) throws MojoExecutionException {
+        final File agentJar;
+        try {
+            agentJar = AgentJar.extractToTempLocation();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final Properties properties = new Properties();
+        properties.setProperty("argLine", (this.argLine == null || this.argLine.trim().isEmpty() ? "" : this.argLine.trim() + " ") +
+                "-javaagent:" + agentJar.getAbsolutePath() + "=output=none " +
+                "-D" + PerTestCoverageRecorder.OUTPUT_DIRECTORY_PROPERTY + "=" + new File(pathToRootOfProject + OUTPUT_DIRECTORY).getAbsolutePath()
+        );
+        properties.setProperty("maven.test.additionalClasspath", extractListenerJar().getAbsolutePath());
+        new CloverExecutor().cleanAndRunTests(pathToRootOfProject, properties);
+        if (getExecutionDataFiles(pathToRootOfProject).length == 0 &&
+                !SurefireReports.readTestCases(new File(pathToRootOfProject + CloverExecutor.SUREFIRE_REPORTS_DIRECTORY)).isEmpty()) {
+            throw new MojoExecutionException("The tests of " + pathToRootOfProject + " ran, but their coverage has not been recorded. " +
+                    "With the JUnit 4 provider of surefire, " + JacocoRunListener.class.getName() +
+                    " must be given as listener in the properties of its configuration.");
+        }
+    }
+
+    private static File[] getExecutionDataFiles(String pathToRootOfProject) {
+        final File[] executionDataFiles = new File(pathToRootOfProject + OUTPUT_DIRECTORY).listFiles(
+                (directory, name) -> name.endsWith(PerTestCoverageRecorder.EXECUTION_DATA_EXTENSION)
+        );
+        return executionDataFiles == null ? new File[0] : executionDataFiles;
+    }
+
+    /**
+     * @return a temporary jar with only the entries of the plugin that run with the tests, so the other classes and
+     * resources of the plugin, e.g. its log4j.properties, do not leak into the classpath of the tests
+     */
+    private static File extractListenerJar() {
+        final File location;
+        try {
+            location = new File(JacocoTestExecutionListener.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new RuntimeException(e);
+        }
+        try {
+            final File listenerJar = File.createTempFile("diff-test-selection-listener", ".jar");
+            listenerJar.deleteOnExit();
+            try (JarOutputStream output = new JarOutputStream(new FileOutputStream(listenerJar))) {
+                if (location.isDirectory()) {
+                    final Path root = location.toPath();
+                    final List<Path> files;
+                    try (Stream<Path> paths = Files.walk(root)) {
+                        files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+                    }
+                    for (Path path : files) {
+                        final String name = root.relativize(path).toString().replace(File.separatorChar, '/');
+                        if (isListenerEntry(name)) {
+                            output.putNextEntry(new JarEntry(name));
+                            Files.copy(path, output);
+                            output.closeEntry();
+                        }
+                    }
+                } else {
+                    try (JarFile jar = new JarFile(location)) {
+                        for (JarEntry entry : Collections.list(jar.entries())) {
+                            if (!entry.isDirectory() && isListenerEntry(entry.getName())) {
+                                output.putNextEntry(new JarEntry(entry.getName()));
+                                try (InputStream input = jar.getInputStream(entry)) {
+                                    copy(input, output);
+                                }
+                                output.closeEntry();
+                            }
+                        }
+                    }
+                }
+            }
+            return listenerJar;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isListenerEntry(String name) {
+        for (String listenerEntry : LISTENER_ENTRIES) {
+            if (name.startsWith(listenerEntry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void copy(InputStream input, OutputStream output) throws IOException {
+        final byte[] buffer = new byte[8192];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+    }
+
+    @Override
+    public CoverageIndex readCoverage(String pathToRootOfProject) {
+        return this.read(pathToRootOfProject, null);
+    }
+
+    /**
+     * analyzes only the given classes, and their nested classes. A class declared next to another one, in the
+     * source file of the latter, is analyzed only if it is given too.
+     */
+    @Override
+    public CoverageIndex readCoverage(String pathToRootOfProject, Set<String> classNames) {
+        return this.read(pathToRootOfProject, classNames);
+    }
+
+    private CoverageIndex read(String pathToRootOfProject, @Nullable Set<String> classNames) {
+        final File[] executionDataFiles = getExecutionDataFiles(pathToRootOfProject);
+        final InMemoryCoverageIndex coverage = new InMemoryCoverageIndex();
+        if (executionDataFiles.length == 0) {
+            return coverage;
+        }
+        final Map<String, File> classFilePerName = getClassFiles(new File(pathToRootOfProject + CLASSES_DIRECTORY));
+        final ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (File executionDataFile : executionDataFiles) {
+                futures.add(executor.submit(() -> this.readExecutionData(executionDataFile, classFilePerName, classNames, coverage)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return coverage;
+    }
+
+    /**
+     * @return the compiled classes of the given directory, keyed by their VM name, e.g. org/example/Foo$Bar
+     */
+    private static Map<String, File> getClassFiles(File classesDirectory) {
+        final Map<String, File> classFilePerName = new HashMap<>();
+        final Path root = classesDirectory.toPath();
+        if (!Files.isDirectory(root)) {
+            return classFilePerName;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(path -> path.toString().endsWith(CLASS_EXTENSION))
+                    .forEach(path -> {
+                        final String relativePath = root.relativize(path).toString().replace(File.separatorChar, '/');
+                        classFilePerName.put(relativePath.substring(0, relativePath.length() - CLASS_EXTENSION.length()), path.toFile());
+                    });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return classFilePerName;
+    }
+
+    /**
+     * analyzes the classes executed by one test method, only them, and adds their covered lines and methods
+     */
+    private void readExecutionData(File executionDataFile,
+                                   Map<String, File> classFilePerName,
+                                   @Nullable Set<String> classNames,
+                                   InMemoryCoverageIndex coverage) {
+        final ExecFileLoader loader = new ExecFileLoader();
+        try {
+            loader.load(executionDataFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        final List<SessionInfo> sessions = loader.getSessionInfoStore().getInfos();
+        if (sessions.isEmpty() || sessions.get(0).getId().indexOf('#') < 0) {
+            return;
+        }
+        final SessionInfo session = sessions.get(0);
+        final int indexOfSeparator = session.getId().lastIndexOf('#');
+        final CoverageBuilder builder = new CoverageBuilder();
+        final Analyzer analyzer = new Analyzer(loader.getExecutionDataStore(), builder);
+        for (ExecutionData executionData : loader.getExecutionDataStore().getContents()) {
+            final File classFile = classFilePerName.get(executionData.getName());
+            if (classFile == null || !executionData.hasHits() ||
+                    classNames != null && !classNames.contains(getTopLevelClassName(executionData.getName()))) {
+                continue;
+            }
+            try (InputStream input = new FileInputStream(classFile)) {
+                analyzer.analyzeClass(input, classFile.getAbsolutePath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        final int testId = coverage.getTestId(
+                session.getId().substring(0, indexOfSeparator),
+                session.getId().substring(indexOfSeparator + 1)
+        );
+        coverage.setTestDuration(testId, (session.getDumpTimeStamp() - session.getStartTimeStamp()) / 1000.0D);
+        for (IClassCoverage classCoverage : builder.getClasses()) {
+            if (classCoverage.getSourceFileName() == null || classCoverage.getFirstLine() == ISourceNode.UNKNOWN_LINE) {
+                // compiled without debug information
+                continue;
+            }
+            final String targetClassName = getTargetClassName(classCoverage);
+            if (classNames != null && !classNames.contains(targetClassName)) {
+                continue;
+            }
+            final BitSet coveredLines = new BitSet();
+            for (int line = classCoverage.getFirstLine(); line <= classCoverage.getLastLine(); line++) {
+                final int status = classCoverage.getLine(line).getStatus();
+                if (status == ICounter.FULLY_COVERED || status == ICounter.PARTLY_COVERED) {
+                    coveredLines.set(line);
+                }
+            }
+            coverage.addCoverage(testId, targetClassName, coveredLines);
+            // unlike with Clover, a method starts at its first line with bytecode, not at its declaration: the
+            // changes are mapped on a line of the body, see DiffTestSelectionMojo#getModifiedLine
+            for (IMethodCoverage methodCoverage : classCoverage.getMethods()) {
+                if (methodCoverage.getMethodCounter().getCoveredCount() > 0 && methodCoverage.getFirstLine() != ISourceNode.UNKNOWN_LINE) {
+                    coverage.addMethodCoverage(testId, targetClassName, methodCoverage.getFirstLine(), methodCoverage.getLastLine());
+                }
+            }
+        }
+    }
+
+    /**
+     * @param name the VM name of a class, e.g. org/example/Foo$Bar
+     * @return the full qualified name of its top-level class, e.g. org.example.Foo
+     */
+    private static String getTopLevelClassName(String name) {
+        final int indexOfNestedClass = name.indexOf('$');
+        return (indexOfNestedClass < 0 ? name : name.substring(0, indexOfNestedClass)).replace('/', '.');
+    }
+
+    /**
+     * @return the full qualified name of the top-level class of the source file of the given class
+     */
+    private static String getTargetClassName(IClassCoverage classCoverage) {
+        final String sourceFileName = classCoverage.getSourceFileName();
+        final String simpleName = sourceFileName.endsWith(JAVA_EXTENSION) ?
+                sourceFileName.substring(0, sourceFileName.length() - JAVA_EXTENSION.length()) :
+                sourceFileName;
+        return classCoverage.getPackageName().isEmpty() ?
+                simpleName :
+                classCoverage.getPackageName().replace('/', '.') + "." + simpleName;
+    }
+
+}
@@ -0,0 +1,107 @@
+package eu.stamp_project.diff_test_selection;
+
+import org.apache.maven.model.Dependency;
+import org.apache.maven.project.MavenProject;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The modules of a multi-module build, located by their path relative to the root of the build,
+ * and linked by their dependencies.
+ */
+class Reactor {
+
+    private final File rootDirectory;
+
+    private final Map<String, MavenProject> modulePerRelativePath;
+
+    private final Map<MavenProject, Set<MavenProject>> dependentsPerModule;
+
+    /**
+     * @param root    the root project of the build
+     * @param modules all the projects of the build, including the root
+     */
+    Reactor(MavenProject root, List<MavenProject> modules) {
+        this.rootDirectory = root.getBasedir();
+        this.modulePerRelativePath = new HashMap<>();
+        final Map<String, MavenProject> modulePerKey = new HashMap<>();
+        for (MavenProject module : modules) {
+            this.modulePerRelativePath.put(this.getRelativePath(module), module);
+            modulePerKey.put(module.getGroupId() + ":" + module.getArtifactId(), module);
+        }
+        this.dependentsPerModule = new HashMap<>();
+        for (MavenProject module : modules) {
+            for (Dependency dependency : module.getDependencies()) {
+                final MavenProject dependencyModule = modulePerKey.get(dependency.getGroupId() + ":" + dependency.getArtifactId());
+                if (dependencyModule != null && dependencyModule != module) {
+                    this.dependentsPerModule.computeIfAbsent(dependencyModule, key -> new LinkedHashSet<>()).add(module);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the path of the directory of the given module, relative to the root of the build, empty for the root
+     */
+    String getRelativePath(MavenProject module) {
+        return this.rootDirectory.toPath()
+                .relativize(module.getBasedir().toPath())
+                .toString()
+                .replace(File.separatorChar, '/');
+    }
+
+    /**
+     * @param path the path of a file, relative to the root of the build. If the diff has been made from the parent
+     *             of the root, e.g. with "diff -ru", the first directory of the path is ignored when nothing matches
+     * @return the innermost module that contains the given file, null if there is none
+     */
+    @Nullable
+    MavenProject getModule(String path) {
+        MavenProject module = this.getInnermostModule(path);
+        final int indexOfSeparator = path.indexOf('/');
+        if ((module == null || this.getRelativePath(module).isEmpty()) && indexOfSeparator >= 0) {
+            final MavenProject moduleFromParent = this.getInnermostModule(path.substring(indexOfSeparator + 1));
+            if (moduleFromParent != null && (module == null || !this.getRelativePath(moduleFromParent).isEmpty())) {
+                module = moduleFromParent;
+            }
+        }
+        return module;
+    }
+
+    @Nullable
+    private MavenProject getInnermostModule(String path) {
+        for (int index = path.lastIndexOf('/'); index > 0; index = path.lastIndexOf('/', index - 1)) {
+            final MavenProject module = this.modulePerRelativePath.get(path.substring(0, index));
+            if (module != null) {
+                return module;
+            }
+        }
+        return this.modulePerRelativePath.get("");
+    }
+
+    /**
+     * @return the given modules, and all the modules that depend on them, directly or not
+     */
+    Set<MavenProject> getDependents(Collection<MavenProject> modules) {
+        final Set<MavenProject> dependents = new LinkedHashSet<>(modules);
+        final Deque<MavenProject> modulesToVisit = new ArrayDeque<>(modules);
+        while (!modulesToVisit.isEmpty()) {
+            for (MavenProject dependent : this.dependentsPerModule.getOrDefault(modulesToVisit.pop(), new LinkedHashSet<>())) {
+                if (dependents.add(dependent)) {
+                    modulesToVisit.push(dependent);
+                }
+            }
+        }
+        return dependents;
+    }
+
+}
@@ -0,0 +1,188 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndexFile;
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.MappedCoverageIndex;
+import eu.stamp_project.diff_test_selection.diff.FileDiff;
+import eu.stamp_project.diff_test_selection.diff.UnifiedDiffParser;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Refreshes the coverage index of a previous baseline commit for the current version of the project, given the diff
+ * between both. Only the test classes that may have a different coverage are instrumented and executed again:
+ * the test classes that execute a changed class, and the changed test classes. Their entries are then replaced
+ * in the previous coverage, and the result is saved as the coverage index of the current commit.
+ * <p>
+ * Test classes that execute none of the changed classes keep their previous coverage: they execute the same,
+ * unchanged, code.
+ */
+@Mojo(name = "refresh")
+public class RefreshCoverageMojo extends AbstractMojo {
+
+    private static final String JAVA_EXTENSION = ".java";
+
+    @Parameter(defaultValue = "${project}", required = true)
+    private MavenProject project;
+
+    @Parameter(property = "pathToDiff", required = true)
+    private String pathToDiff;
+
+    @Parameter(property = "previousBaselineCommit", required = true)
+    private String previousBaselineCommit;
+
+    @Parameter(property = "baselineCommit")
+    private String baselineCommit;
+
+    @Parameter(property = "coverageIndexDirectory", defaultValue = "${project.basedir}/.diff-test-selection")
+    private String coverageIndexDirectory;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        File directory = new File(this.coverageIndexDirectory);
+        if (!directory.isAbsolute()) {
+            directory = new File(this.project.getBasedir(), this.coverageIndexDirectory);
+        }
+        final File previousIndexFile = CoverageIndexFile.getIndexFile(directory, this.previousBaselineCommit);
+        if (!previousIndexFile.exists()) {
+            throw new MojoExecutionException("There is no coverage index for " + this.previousBaselineCommit + " in " + directory.getAbsolutePath());
+        }
+        if (this.baselineCommit == null || this.baselineCommit.isEmpty()) {
+            this.baselineCommit = GitUtils.getHeadCommit(this.project.getBasedir());
+            if (this.baselineCommit == null) {
+                throw new MojoExecutionException("Could not find the commit of " + this.project.getBasedir().getAbsolutePath() + ", please set baselineCommit.");
+            }
+        }
+        // not mapped: the build of the tests must be able to delete or replace any file while the index is used
+        final CoverageIndex previousCoverage = MappedCoverageIndex.load(previousIndexFile);
+        final Set<String> changedPaths = this.getChangedPaths();
+        final Set<String> changedClassNames = new HashSet<>();
+        final Set<String> testClassNames = new LinkedHashSet<>();
+        this.matchChangedPaths(previousCoverage, changedPaths, changedClassNames, testClassNames);
+        this.addTestClassesThatExecute(previousCoverage, changedClassNames, testClassNames);
+        getLog().info(changedClassNames.size() + " changed classes, " + testClassNames.size() + " test classes to execute again.");
+
+        final InMemoryCoverageIndex refreshedCoverage = new InMemoryCoverageIndex();
+        refreshedCoverage.addAll(previousCoverage, testClassNames, changedClassNames);
+        if (!testClassNames.isEmpty()) {
+            new CloverExecutor().instrumentAndRunTests(this.project.getBasedir().getAbsolutePath(), testClassNames);
+            refreshedCoverage.addAll(
+                    new CloverDatabaseReader().read(this.project.getBasedir().getAbsolutePath()),
+                    Collections.emptySet(),
+                    Collections.emptySet()
+            );
+        }
+        final File indexFile = CoverageIndexFile.getIndexFile(directory, this.baselineCommit);
+        getLog().info("Saving the coverage index in " + indexFile.getAbsolutePath());
+        CoverageIndexFile.write(refreshedCoverage, this.baselineCommit, indexFile);
+    }
+
+    /**
+     * @return the paths of the java files that are modified, created or deleted by the diff
+     */
+    private Set<String> getChangedPaths() throws MojoExecutionException {
+        final Set<String> changedPaths = new LinkedHashSet<>();
+        try (UnifiedDiffParser parser = new UnifiedDiffParser(new FileReader(new File(this.pathToDiff)))) {
+            while (parser.hasNext()) {
+                final FileDiff fileDiff = parser.next();
+                for (String path : new String[]{fileDiff.getOldPath(), fileDiff.getNewPath()}) {
+                    if (path != null && path.endsWith(JAVA_EXTENSION)) {
+                        changedPaths.add(path);
+                    }
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new MojoExecutionException("Could not read " + this.pathToDiff, e);
+        }
+        return changedPaths;
+    }
+
+    /**
+     * Finds the classes under test and the test classes that are defined in the changed files.
+     * A class matches a changed file if the file path ends with the path of the class, e.g. org/example/Foo.java.
+     * Test classes that are not in the previous coverage, i.e. new test classes, are found in the test source roots.
+     */
+    private void matchChangedPaths(CoverageIndex coverage,
+                                   Set<String> changedPaths,
+                                   Set<String> changedClassNames,
+                                   Set<String> testClassNames) {
+        final Map<String, String> classNamePerPath = new HashMap<>();
+        for (String className : coverage.getCoveredClassNames()) {
+            classNamePerPath.put(toPath(className), className);
+        }
+        final Map<String, Set<String>> testClassNamesPerPath = new HashMap<>();
+        for (int testId = 0; testId < coverage.getNumberOfTests(); testId++) {
+            final String testClassName = coverage.getTestClassName(testId);
+            testClassNamesPerPath.computeIfAbsent(toPath(testClassName), path -> new HashSet<>()).add(testClassName);
+        }
+        for (String changedPath : changedPaths) {
+            for (int index = 0; index >= 0; index = changedPath.indexOf('/', index + 1)) {
+                final String suffix = index == 0 ? changedPath : changedPath.substring(index + 1);
+                if (classNamePerPath.containsKey(suffix)) {
+                    changedClassNames.add(classNamePerPath.get(suffix));
+                }
+                if (testClassNamesPerPath.containsKey(suffix)) {
+                    testClassNames.addAll(testClassNamesPerPath.get(suffix));
+                }
+            }
+            final String newTestClassName = this.getTestClassName(changedPath);
+            if (newTestClassName != null) {
+                testClassNames.add(newTestClassName);
+            }
+        }
+    }
+
+    /**
+     * @return the full qualified name of the test class defined in the given file if this file exists in one of
+     * the test source roots of the project, null otherwise
+     */
+    private String getTestClassName(String changedPath) {
+        for (String testSourceRoot : this.project.getTestCompileSourceRoots()) {
+            final String relativeTestSourceRoot = this.project.getBasedir().toPath()
+                    .relativize(new File(testSourceRoot).toPath())
+                    .toString()
+                    .replace(File.separatorChar, '/') + "/";
+            final int index = changedPath.indexOf(relativeTestSourceRoot);
+            if (index >= 0 && (index == 0 || changedPath.charAt(index - 1) == '/')) {
+                final String relativePath = changedPath.substring(index + relativeTestSourceRoot.length());
+                if (new File(testSourceRoot, relativePath).exists()) {
+                    return relativePath.substring(0, relativePath.length() - JAVA_EXTENSION.length()).replace('/', '.');
+                }
+            }
+        }
+        return null;
+    }
+
+    private void addTestClassesThatExecute(CoverageIndex coverage, Set<String> classNames, Set<String> testClassNames) {
+        for (String className : classNames) {
+            final int numberOfLines = coverage.getNumberOfLines(className);
+            for (int line = 0; line < numberOfLines; line++) {
+                for (int testId : coverage.getTestsThatExecute(className, line)) {
+                    testClassNames.add(coverage.getTestClassName(testId));
+                }
+            }
+        }
+    }
+
+    private static String toPath(String className) {
+        final int indexOfInnerClass = className.indexOf('$');
+        final String topLevelClassName = indexOfInnerClass < 0 ? className : className.substring(0, indexOfInnerClass);
+        return topLevelClassName.replace('.', '/') + JAVA_EXTENSION;
+    }
+
+}
@@ -0,0 +1,96 @@
+package eu.stamp_project.diff_test_selection;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Asks a running {@link SelectionServerMojo} for the tests that execute the changes of a diff, and writes them as
+ * the list goal does. It can also stop the server.
+ */
+@Mojo(name = "remote", aggregator = true)
+public class RemoteSelectionMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", required = true)
+    private MavenProject project;
+
+    @Parameter(property = "pathToDiff")
+    private String pathToDiff;
+
+    @Parameter(property = "outputPath", defaultValue = "testsThatExecuteTheChange.csv")
+    private String outputPath;
+
+    @Parameter(property = "report", defaultValue = "CSV")
+    private String report;
+
+    @Parameter(property = "serverPort", defaultValue = "7878")
+    private int serverPort = 7878;
+
+    /**
+     * stops the server instead of asking it for a selection
+     */
+    @Parameter(property = "stopServer", defaultValue = "false")
+    private boolean stopServer;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (!this.stopServer && (this.pathToDiff == null || !new File(this.pathToDiff).exists())) {
+            throw new MojoExecutionException("pathToDiff is mandatory, please give the diff of the changes!");
+        }
+        final Map<String, Set<String>> testThatExecuteChanges = new LinkedHashMap<>();
+        final Map<String, Double> durationPerTest = new HashMap<>();
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.serverPort)) {
+            final OutputStream output = socket.getOutputStream();
+            output.write(((this.stopServer ? SelectionServerMojo.STOP : SelectionServerMojo.SELECT) + "\n").getBytes(StandardCharsets.UTF_8));
+            if (!this.stopServer) {
+                Files.copy(new File(this.pathToDiff).toPath(), output);
+            }
+            output.flush();
+            socket.shutdownOutput();
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            final String status = reader.readLine();
+            if (status == null || !status.equals(SelectionServerMojo.OK)) {
+                throw new MojoExecutionException("The selection server failed: " + status);
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(SelectionServerMojo.SEPARATOR);
+                testThatExecuteChanges.computeIfAbsent(fields[0], testClassName -> new LinkedHashSet<>()).add(fields[1]);
+                if (fields.length > 2) {
+                    durationPerTest.put(fields[0] + "#" + fields[1], Double.parseDouble(fields[2]));
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not reach the selection server on the port " + this.serverPort, e);
+        }
+        if (this.stopServer) {
+            getLog().info("Selection server stopped.");
+            return;
+        }
+        getLog().info("Saving result in " + this.project.getBasedir().getAbsolutePath() + "/" + this.outputPath + " ...");
+        DiffTestSelectionMojo.ReportEnum.valueOf(this.report).instance.report(
+                getLog(),
+                this.project.getBasedir().getAbsolutePath() + "/" + this.outputPath,
+                testThatExecuteChanges,
+                durationPerTest
+        );
+    }
+
+}
@@ -0,0 +1,122 @@
+package eu.stamp_project.diff_test_selection;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Selects the tests that execute the changes, as the list goal does, and runs exactly them in the same invocation.
+ * <p>
+ * The selected tests are given to surefire through an includes file, so there is no limit on their number, and they
+ * can run in parallel forks. At the end, the time spent is compared to the duration of the whole test suite in the
+ * surefire reports of the previous full run, if there are some.
+ */
+@Mojo(name = "run")
+public class RunSelectedTestsMojo extends DiffTestSelectionMojo {
+
+    private static final String INCLUDES_FILE = "target/diff-test-selection/selected-tests.txt";
+
+    private static final String JAVA_EXTENSION = ".java";
+
+    /**
+     * number of JVMs that run the selected tests in parallel
+     */
+    @Parameter(property = "forkCount", defaultValue = "1")
+    private int forkCount = 1;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        final Map<String, Set<String>> testThatExecuteChanges = this.select();
+        if (testThatExecuteChanges == null) {
+            return;
+        }
+        if (testThatExecuteChanges.isEmpty()) {
+            getLog().info("No test executes the changes, there is nothing to run.");
+            this.writeMetrics();
+            return;
+        }
+        final File basedir = this.getProject().getBasedir();
+        final File includesFile = new File(basedir, INCLUDES_FILE);
+        writeIncludesFile(testThatExecuteChanges, includesFile);
+        final File reportsDirectory = new File(basedir.getAbsolutePath() + CloverExecutor.SUREFIRE_REPORTS_DIRECTORY);
+        final Map<String, Double> durationPerTestClass = SurefireReports.readDurations(reportsDirectory);
+        // the reports of the previous runs are not deleted by surefire
+        final Map<File, Long> lastModifiedPerReport = SurefireReports.getLastModifiedPerReport(reportsDirectory);
+        final int numberOfTestMethods = testThatExecuteChanges.values().stream().mapToInt(Set::size).sum();
+        getLog().info("Running " + numberOfTestMethods + " test methods of " + testThatExecuteChanges.size() + " test classes");
+        final long start = System.currentTimeMillis();
+        final int exitCode;
+        try (SelectionMetrics.Phase phase = this.getMetrics().start("selected test execution")) {
+            exitCode = new CloverExecutor().runTests(basedir.getAbsolutePath(), includesFile, this.forkCount);
+            phase.count("test methods", numberOfTestMethods).count("test classes", testThatExecuteChanges.size());
+        }
+        final double duration = (System.currentTimeMillis() - start) / 1000.0D;
+        final List<File> reports = SurefireReports.getReportsWrittenSince(reportsDirectory, lastModifiedPerReport);
+        final Map<String, Double> durationPerSelectedTestClass = SurefireReports.readDurations(reports);
+        durationPerSelectedTestClass.keySet().retainAll(testThatExecuteChanges.keySet());
+        this.reportTimeSaved(durationPerTestClass, durationPerSelectedTestClass, duration);
+        this.recordTestResults(reports);
+        this.writeMetrics();
+        if (exitCode != 0) {
+            throw new MojoFailureException("Some of the selected tests failed, see the output above.");
+        }
+    }
+
+    /**
+     * writes one line per test class, e.g. org/example/FooTest.java#test1+test2
+     */
+    private static void writeIncludesFile(Map<String, Set<String>> testThatExecuteChanges, File includesFile) throws MojoExecutionException {
+        final File parent = includesFile.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new MojoExecutionException("Could not create " + parent.getAbsolutePath());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(includesFile.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Set<String>> entry : testThatExecuteChanges.entrySet()) {
+                writer.write(entry.getKey().replace('.', '/') + JAVA_EXTENSION);
+                if (!entry.getValue().isEmpty()) {
+                    writer.write("#" + String.join("+", entry.getValue()));
+                }
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not write " + includesFile.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * @param durationPerTestClass         the durations of the test classes before the run, i.e. of the previous full run
+     * @param durationPerSelectedTestClass the durations of the selected test classes during the run
+     * @param duration                     the time spent by the run, in seconds, including the build
+     */
+    private void reportTimeSaved(Map<String, Double> durationPerTestClass,
+                                 Map<String, Double> durationPerSelectedTestClass,
+                                 double duration) {
+        final double selectedDuration = durationPerSelectedTestClass.values().stream().mapToDouble(Double::doubleValue).sum();
+        getLog().info(String.format("The selected tests ran in %.1f s (%.1f s with the build).", selectedDuration, duration));
+        if (durationPerTestClass.isEmpty()) {
+            return;
+        }
+        final double fullDuration = durationPerTestClass.values().stream().mapToDouble(Double::doubleValue).sum();
+        getLog().info(String.format("The whole test suite takes %.1f s: %.1f s saved (%.0f%%).",
+                fullDuration, fullDuration - selectedDuration, 100.0D * (fullDuration - selectedDuration) / fullDuration));
+    }
+
+    /*
+     *  Test purposes
+     */
+
+    void setForkCount(int forkCount) {
+        this.forkCount = forkCount;
+    }
+
+}
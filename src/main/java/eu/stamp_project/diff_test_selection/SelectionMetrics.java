@@ -0,0 +1,289 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.report.JSONReport;
+import org.apache.maven.plugin.logging.Log;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Wall time, allocated bytes and counts of items, e.g. tests or modified lines, of each phase of a selection, and
+ * of the comparison of each changed file.
+ * <p>
+ * Phases are nested: a phase started while another one is running, on the same thread or on a thread created by
+ * it, e.g. a pool of workers, is a child of the latter. Its wall time and its allocated bytes are included in the
+ * ones of its parent, so only the phases without parent add up to the whole selection.
+ * <p>
+ * The allocated bytes are the ones of the thread that runs the phase, plus the ones of its children that ran on
+ * other threads, plus the ones given by {@link Phase#addAllocatedBytes(long)}, e.g. the ones of the comparisons of
+ * the files, that run on their own threads. They are 0 if the JVM cannot measure them. The coverage of the tests is
+ * computed by other maven processes, only their wall time is measured.
+ */
+public class SelectionMetrics {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private static final double NANOSECONDS_PER_MILLISECOND = 1_000_000.0D;
+
+    private static final double BYTES_PER_MEGABYTE = 1024.0D * 1024.0D;
+
+    private final long startTime = System.nanoTime();
+
+    /**
+     * the innermost running phase, inherited by the threads created while it runs
+     */
+    private final InheritableThreadLocal<Phase> currentPhase = new InheritableThreadLocal<>();
+
+    private int numberOfPhases;
+
+    /**
+     * in the order in which they end
+     */
+    private final List<Phase> phases = new ArrayList<>();
+
+    /**
+     * in the order of the diff
+     */
+    private final Map<String, FileMetrics> metricsPerFile = new LinkedHashMap<>();
+
+    public class Phase implements AutoCloseable {
+
+        private final int id;
+
+        private final String name;
+
+        @Nullable
+        private final Phase parent;
+
+        private final Thread thread;
+
+        private final long startTime;
+
+        private final long startAllocatedBytes;
+
+        private long wallTime;
+
+        private long allocatedBytes;
+
+        private final Map<String, Long> counts = new LinkedHashMap<>();
+
+        private Phase(int id, String name, @Nullable Phase parent) {
+            this.id = id;
+            this.name = name;
+            this.parent = parent;
+            this.thread = Thread.currentThread();
+            this.startTime = System.nanoTime();
+            this.startAllocatedBytes = getAllocatedBytes();
+        }
+
+        public Phase count(String item, long count) {
+            synchronized (SelectionMetrics.this) {
+                this.counts.merge(item, count, Long::sum);
+            }
+            return this;
+        }
+
+        public Phase addAllocatedBytes(long allocatedBytes) {
+            synchronized (SelectionMetrics.this) {
+                this.allocatedBytes += allocatedBytes;
+            }
+            return this;
+        }
+
+        /**
+         * ends the phase, it must be called by the thread that started it
+         */
+        @Override
+        public void close() {
+            final long allocatedBytes = getAllocatedBytes() - this.startAllocatedBytes;
+            SelectionMetrics.this.currentPhase.set(this.parent);
+            synchronized (SelectionMetrics.this) {
+                this.wallTime = System.nanoTime() - this.startTime;
+                this.allocatedBytes += allocatedBytes;
+                if (this.parent != null && this.parent.thread != this.thread) {
+                    // the thread of the parent does not see these allocations
+                    this.parent.allocatedBytes += this.allocatedBytes;
+                }
+                SelectionMetrics.this.phases.add(this);
+            }
+        }
+    }
+
+    public static class FileMetrics {
+
+        private long wallTime;
+
+        private long allocatedBytes;
+
+        private long operations;
+
+        private long modifiedLines;
+
+        /**
+         * @param operations the number of edit operations between the ASTs of both versions of the file, or the number
+         *                   of hunks of the diff if only the lines of the file are compared
+         */
+        public void setOperations(long operations) {
+            this.operations = operations;
+        }
+    }
+
+    /**
+     * starts a phase, that ends when it is closed, as a child of the innermost running phase of this thread if any
+     */
+    public Phase start(String name) {
+        final Phase phase;
+        synchronized (this) {
+            phase = new Phase(this.numberOfPhases++, name, this.currentPhase.get());
+        }
+        this.currentPhase.set(phase);
+        return phase;
+    }
+
+    /**
+     * @return the metrics of the given changed file, created at the first call
+     */
+    public synchronized FileMetrics getFileMetrics(String path) {
+        return this.metricsPerFile.computeIfAbsent(path, key -> new FileMetrics());
+    }
+
+    /**
+     * records the comparison of a changed file, that started at the given time, with the given allocated bytes
+     *
+     * @see #getAllocatedBytes()
+     */
+    public void endFile(FileMetrics fileMetrics, long startTime, long startAllocatedBytes, long modifiedLines) {
+        fileMetrics.wallTime = System.nanoTime() - startTime;
+        fileMetrics.allocatedBytes = getAllocatedBytes() - startAllocatedBytes;
+        fileMetrics.modifiedLines = modifiedLines;
+    }
+
+    public synchronized int getNumberOfFiles() {
+        return this.metricsPerFile.size();
+    }
+
+    public synchronized long getAllocatedBytesOfFiles() {
+        return this.metricsPerFile.values().stream().mapToLong(fileMetrics -> fileMetrics.allocatedBytes).sum();
+    }
+
+    public synchronized long getOperationsOfFiles() {
+        return this.metricsPerFile.values().stream().mapToLong(fileMetrics -> fileMetrics.operations).sum();
+    }
+
+    /**
+     * @return the bytes allocated so far by the current thread, 0 if the JVM cannot measure them
+     */
+    public static long getAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) THREAD_MX_BEAN;
+            if (threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * logs one line per phase, indented below its parent, and the slowest changed files
+     */
+    public synchronized void log(Log log, int numberOfFiles) {
+        for (Phase phase : this.getPhasesInStartOrder()) {
+            final StringBuilder line = new StringBuilder();
+            for (Phase parent = phase.parent; parent != null; parent = parent.parent) {
+                line.append("  ");
+            }
+            line.append(phase.name).append(": ")
+                    .append(formatMilliseconds(phase.wallTime)).append(", ")
+                    .append(formatMegabytes(phase.allocatedBytes)).append(" allocated");
+            phase.counts.forEach((item, count) -> line.append(", ").append(count).append(" ").append(item));
+            log.info(line);
+        }
+        this.metricsPerFile.entrySet().stream()
+                .sorted((entry1, entry2) -> Long.compare(entry2.getValue().wallTime, entry1.getValue().wallTime))
+                .limit(numberOfFiles)
+                .forEach(entry -> log.info("  " + entry.getKey() + ": " +
+                        formatMilliseconds(entry.getValue().wallTime) + ", " +
+                        formatMegabytes(entry.getValue().allocatedBytes) + " allocated, " +
+                        entry.getValue().operations + " operations, " +
+                        entry.getValue().modifiedLines + " modified lines")
+                );
+        log.info("total: " + formatMilliseconds(System.nanoTime() - this.startTime));
+    }
+
+    private List<Phase> getPhasesInStartOrder() {
+        final List<Phase> phases = new ArrayList<>(this.phases);
+        phases.sort(Comparator.comparingInt(phase -> phase.id));
+        return phases;
+    }
+
+    /**
+     * writes the metrics as a JSON document, with the phases in the order in which they started. The parent of a
+     * phase is given by its id, null for the phases that add up to the whole selection:
+     * <pre>
+     * {"wallTimeMs":...,
+     *  "phases":[{"id":...,"parent":...,"name":...,"wallTimeMs":...,"allocatedBytes":...,"counts":{"tests":...}}],
+     *  "files":[{"path":...,"wallTimeMs":...,"allocatedBytes":...,"operations":...,"modifiedLines":...}]}
+     * </pre>
+     */
+    public synchronized void write(File file) {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            writer.write("{\"wallTimeMs\":" + toMilliseconds(System.nanoTime() - this.startTime) + ",\n\"phases\":[");
+            boolean first = true;
+            for (Phase phase : this.getPhasesInStartOrder()) {
+                writer.write((first ? "\n" : ",\n") + "{\"id\":" + phase.id +
+                        ",\"parent\":" + (phase.parent == null ? "null" : Integer.toString(phase.parent.id)) +
+                        ",\"name\":" + JSONReport.quote(phase.name) +
+                        ",\"wallTimeMs\":" + toMilliseconds(phase.wallTime) +
+                        ",\"allocatedBytes\":" + phase.allocatedBytes +
+                        ",\"counts\":{");
+                boolean firstCount = true;
+                for (Map.Entry<String, Long> count : phase.counts.entrySet()) {
+                    writer.write((firstCount ? "" : ",") + JSONReport.quote(count.getKey()) + ":" + count.getValue());
+                    firstCount = false;
+                }
+                writer.write("}}");
+                first = false;
+            }
+            writer.write("],\n\"files\":[");
+            first = true;
+            for (Map.Entry<String, FileMetrics> entry : this.metricsPerFile.entrySet()) {
+                writer.write((first ? "\n" : ",\n") + "{\"path\":" + JSONReport.quote(entry.getKey()) +
+                        ",\"wallTimeMs\":" + toMilliseconds(entry.getValue().wallTime) +
+                        ",\"allocatedBytes\":" + entry.getValue().allocatedBytes +
+                        ",\"operations\":" + entry.getValue().operations +
+                        ",\"modifiedLines\":" + entry.getValue().modifiedLines + "}");
+                first = false;
+            }
+            writer.write("]}\n");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String toMilliseconds(long nanoseconds) {
+        return String.format(Locale.ROOT, "%.3f", nanoseconds / NANOSECONDS_PER_MILLISECOND);
+    }
+
+    private static String formatMilliseconds(long nanoseconds) {
+        return String.format(Locale.ROOT, "%.1f ms", nanoseconds / NANOSECONDS_PER_MILLISECOND);
+    }
+
+    private static String formatMegabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / BYTES_PER_MEGABYTE);
+    }
+
+}
@@ -0,0 +1,180 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the coverage, the durations and the history of the tests, and the parsed models of the changed files, in
+ * memory, and answers selection requests of the {@link RemoteSelectionMojo} clients on a local socket, until one of
+ * them stops it. Each request then only pays for the comparison of its diff and the matching with the coverage.
+ * <p>
+ * The protocol is a single exchange per connection, in UTF-8. The client sends a command line, SELECT followed by
+ * the diff, or STOP, and closes its output. The server answers with a status line, OK or ERROR followed by a
+ * message, and, for SELECT, one line per selected test method, by decreasing priority: the full qualified name of
+ * its class, its name, and its duration in seconds if it is known, separated by semicolons.
+ * <p>
+ * Requests are answered one after the other. A client that stops sending its request for longer than the timeout is
+ * disconnected, and a request that fails, whatever the failure, is answered with an error, so neither stops the
+ * server. The coverage is the one of the baseline commit when the server starts: it must be restarted when the
+ * baseline changes.
+ */
+@Mojo(name = "serve", aggregator = true)
+public class SelectionServerMojo extends DiffTestSelectionMojo {
+
+    static final String SELECT = "SELECT";
+
+    static final String STOP = "STOP";
+
+    static final String OK = "OK";
+
+    static final String ERROR = "ERROR";
+
+    static final String SEPARATOR = ";";
+
+    /**
+     * port of the loopback interface on which the requests are received
+     */
+    @Parameter(property = "serverPort", defaultValue = "7878")
+    private int serverPort = 7878;
+
+    /**
+     * milliseconds after which a client that stops sending its request is disconnected
+     */
+    @Parameter(property = "serverTimeout", defaultValue = "10000")
+    private int serverTimeout = 10000;
+
+    private CoverageIndex coverage;
+
+    private TestHistory testHistory;
+
+    private Map<String, Double> durationPerTest;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        if (this.isMultiModule()) {
+            throw new MojoExecutionException("The selection server does not support multiModule, please start one server per module.");
+        }
+        final long start = System.currentTimeMillis();
+        this.coverage = super.getCoverage(null);
+        this.testHistory = super.getTestHistory();
+        getLog().info("Coverage of " + this.coverage.getNumberOfTests() + " tests loaded in " + (System.currentTimeMillis() - start) + " ms");
+        try (ServerSocket serverSocket = new ServerSocket(this.serverPort, 0, InetAddress.getLoopbackAddress())) {
+            getLog().info("Waiting for selection requests on " + serverSocket.getLocalSocketAddress());
+            boolean running = true;
+            while (running) {
+                try (Socket socket = serverSocket.accept()) {
+                    socket.setSoTimeout(this.serverTimeout);
+                    running = this.answer(socket);
+                } catch (IOException e) {
+                    getLog().warn("Could not answer a request: " + e.getMessage());
+                } catch (Throwable e) {
+                    getLog().warn("Could not answer a request", e);
+                }
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Could not listen on the port " + this.serverPort, e);
+        }
+        getLog().info("Selection server stopped.");
+    }
+
+    /**
+     * @return false if the server has been asked to stop
+     */
+    private boolean answer(Socket socket) throws IOException {
+        final InputStream input = socket.getInputStream();
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        final String command = readCommand(input);
+        if (STOP.equals(command)) {
+            writer.write(OK + "\n");
+            writer.flush();
+            return false;
+        }
+        if (!SELECT.equals(command)) {
+            writer.write(ERROR + " unknown command " + command + "\n");
+            writer.flush();
+            return true;
+        }
+        final File diffFile = File.createTempFile("diff-test-selection", ".diff");
+        try {
+            Files.copy(input, diffFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            final long start = System.currentTimeMillis();
+            this.setPathToDiff(diffFile.getAbsolutePath());
+            final Map<String, Set<String>> testThatExecuteChanges = this.select();
+            final Map<String, Double> durationPerSelectedTest = this.getDurationPerSelectedTest();
+            writer.write(OK + "\n");
+            int numberOfTestMethods = 0;
+            for (Map.Entry<String, Set<String>> entry : testThatExecuteChanges.entrySet()) {
+                for (String testMethodName : entry.getValue()) {
+                    final Double duration = durationPerSelectedTest.get(entry.getKey() + "#" + testMethodName);
+                    writer.write(entry.getKey() + SEPARATOR + testMethodName + (duration == null ? "" : SEPARATOR + duration) + "\n");
+                }
+                numberOfTestMethods += entry.getValue().size();
+            }
+            getLog().info(numberOfTestMethods + " test methods selected in " + (System.currentTimeMillis() - start) + " ms");
+            this.writeMetrics();
+        } catch (Throwable e) {
+            getLog().warn("Could not select the tests", e);
+            writer.write(ERROR + " " + String.valueOf(e.getMessage()).replace('\n', ' ') + "\n");
+        } finally {
+            if (!diffFile.delete()) {
+                diffFile.deleteOnExit();
+            }
+        }
+        writer.flush();
+        return true;
+    }
+
+    /**
+     * reads the first line of the request, byte per byte, so the diff that follows is left untouched in the stream
+     */
+    @Nullable
+    private static String readCommand(InputStream input) throws IOException {
+        final ByteArrayOutputStream command = new ByteArrayOutputStream();
+        int current;
+        while ((current = input.read()) != -1 && current != '\n') {
+            command.write(current);
+        }
+        return current == -1 && command.size() == 0 ? null : new String(command.toByteArray(), StandardCharsets.UTF_8).trim();
+    }
+
+    @Override
+    protected CoverageIndex getCoverage(@Nullable Set<String> changedClassNames) {
+        return this.coverage;
+    }
+
+    @Override
+    TestHistory getTestHistory() {
+        return this.testHistory;
+    }
+
+    /**
+     * parses the surefire reports at the first call only, if a selected test has no other duration
+     */
+    @Override
+    protected Map<String, Double> getDurationPerTest() {
+        if (this.durationPerTest == null) {
+            this.durationPerTest = super.getDurationPerTest();
+        }
+        return this.durationPerTest;
+    }
+
+}
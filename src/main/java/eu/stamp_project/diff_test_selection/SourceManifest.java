@@ -0,0 +1,128 @@
+package eu.stamp_project.diff_test_selection;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Hashes of the sources and of the build files of a project, e.g. its POMs and resources, used to tell whether the
+ * instrumented build of a previous run can be reused.
+ * A manifest is stored as one line per file: the hash, a space, and the path of the file relative to the project.
+ */
+class SourceManifest {
+
+    private static final String JAVA_EXTENSION = ".java";
+
+    /**
+     * @param basedir     the directory of the project
+     * @param sourceRoots the source roots to hash, e.g. the compile and test compile source roots
+     * @return the SHA-256 hash of each java file of the given roots, keyed by its path relative to the project
+     */
+    static Map<String, String> compute(File basedir, Collection<String> sourceRoots) {
+        final Map<String, String> hashPerPath = new TreeMap<>();
+        for (String sourceRoot : sourceRoots) {
+            hash(basedir, new File(sourceRoot).toPath(), path -> path.toString().endsWith(JAVA_EXTENSION), hashPerPath);
+        }
+        return hashPerPath;
+    }
+
+    /**
+     * @param basedir the directory of the project
+     * @param files   the files to hash, and the directories whose files are all hashed, e.g. the POMs and the
+     *                resource roots
+     * @return the SHA-256 hash of each of these files, keyed by its path relative to the project
+     */
+    static Map<String, String> computeAll(File basedir, Collection<File> files) {
+        final Map<String, String> hashPerPath = new TreeMap<>();
+        for (File file : files) {
+            hash(basedir, file.toPath(), Files::isRegularFile, hashPerPath);
+        }
+        return hashPerPath;
+    }
+
+    private static void hash(File basedir, Path root, Predicate<Path> filter, Map<String, String> hashPerPath) {
+        if (!Files.exists(root)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(filter)
+                    .forEach(path -> hashPerPath.put(
+                            basedir.getAbsoluteFile().toPath().relativize(path.toAbsolutePath()).toString().replace(File.separatorChar, '/'),
+                            hash(path)
+                    ));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the manifest saved in the given file, or null if there is none, or if it cannot be read
+     */
+    @Nullable
+    static Map<String, String> read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        final Map<String, String> hashPerPath = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final int indexOfSeparator = line.indexOf(' ');
+                if (indexOfSeparator < 0) {
+                    return null;
+                }
+                hashPerPath.put(line.substring(indexOfSeparator + 1), line.substring(0, indexOfSeparator));
+            }
+        } catch (IOException e) {
+            return null;
+        }
+        return hashPerPath;
+    }
+
+    static void write(Map<String, String> hashPerPath, File file) {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new RuntimeException("Could not create " + parent.getAbsolutePath());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : hashPerPath.entrySet()) {
+                writer.write(entry.getValue() + " " + entry.getKey());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static String hash(Path path) {
+        try (InputStream input = new DigestInputStream(Files.newInputStream(path), MessageDigest.getInstance("SHA-256"))) {
+            final byte[] buffer = new byte[8192];
+            while (input.read(buffer) >= 0) {
+                // the digest is updated while reading
+            }
+            final StringBuilder hash = new StringBuilder();
+            for (byte b : ((DigestInputStream) input).getMessageDigest().digest()) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
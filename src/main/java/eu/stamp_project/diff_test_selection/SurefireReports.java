@@ -0,0 +1,186 @@
+package eu.stamp_project.diff_test_selection;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the XML reports written by surefire, i.e. the TEST-*.xml files.
+ */
+class SurefireReports {
+
+    private static final String TEST_SUITE = "testsuite";
+
+    private static final String TEST_CASE = "testcase";
+
+    private static final String TEST_SEPARATOR = "#";
+
+    /**
+     * The result of a test method in a report.
+     */
+    static class TestCaseResult {
+
+        final double duration;
+
+        final boolean failed;
+
+        TestCaseResult(double duration, boolean failed) {
+            this.duration = duration;
+            this.failed = failed;
+        }
+    }
+
+    /**
+     * @param reportsDirectory the directory of the reports, e.g. target/surefire-reports
+     * @return the reports of the given directory, empty if it does not exist
+     */
+    static List<File> getReports(File reportsDirectory) {
+        final File[] reports = reportsDirectory.listFiles((directory, name) -> name.startsWith("TEST-") && name.endsWith(".xml"));
+        return reports == null ? Collections.emptyList() : Arrays.asList(reports);
+    }
+
+    /**
+     * surefire does not delete the reports of the previous runs, so the reports written by a run are the ones that
+     * are new or have been modified since it started
+     *
+     * @return the last modification time of each report of the given directory
+     */
+    static Map<File, Long> getLastModifiedPerReport(File reportsDirectory) {
+        final Map<File, Long> lastModifiedPerReport = new HashMap<>();
+        for (File report : getReports(reportsDirectory)) {
+            lastModifiedPerReport.put(report, report.lastModified());
+        }
+        return lastModifiedPerReport;
+    }
+
+    /**
+     * @param lastModifiedPerReport the last modification time of each report before the run, see {@link #getLastModifiedPerReport(File)}
+     * @return the reports of the given directory that have been written since
+     */
+    static List<File> getReportsWrittenSince(File reportsDirectory, Map<File, Long> lastModifiedPerReport) {
+        return getReports(reportsDirectory).stream()
+                .filter(report -> !Long.valueOf(report.lastModified()).equals(lastModifiedPerReport.get(report)))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param reportsDirectory the directory of the reports, e.g. target/surefire-reports
+     * @return the duration, in seconds, of each test class that has a report in the given directory. Reports that
+     * cannot be read are ignored.
+     */
+    static Map<String, Double> readDurations(File reportsDirectory) {
+        return readDurations(getReports(reportsDirectory));
+    }
+
+    /**
+     * @return the duration, in seconds, of each test class of the given reports. Reports that cannot be read are
+     * ignored.
+     */
+    static Map<String, Double> readDurations(List<File> reports) {
+        final Map<String, Double> durationPerTestClass = new HashMap<>();
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        for (File report : reports) {
+            try (InputStream input = new BufferedInputStream(new FileInputStream(report))) {
+                final XMLStreamReader reader = factory.createXMLStreamReader(input);
+                try {
+                    readTestSuite(reader, durationPerTestClass);
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException | XMLStreamException | NumberFormatException e) {
+                // a missing duration only makes the durations less accurate
+            }
+        }
+        return durationPerTestClass;
+    }
+
+    /**
+     * @param reportsDirectory the directory of the reports, e.g. target/surefire-reports
+     * @return the result of each test method that has a report in the given directory, keyed by the full qualified
+     * name of its class and its name, separated by #. Reports that cannot be read are ignored.
+     */
+    static Map<String, TestCaseResult> readTestCases(File reportsDirectory) {
+        return readTestCases(getReports(reportsDirectory));
+    }
+
+    /**
+     * @return the result of each test method of the given reports, keyed by the full qualified name of its class and
+     * its name, separated by #. Reports that cannot be read are ignored.
+     */
+    static Map<String, TestCaseResult> readTestCases(List<File> reports) {
+        final Map<String, TestCaseResult> resultPerTest = new HashMap<>();
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        for (File report : reports) {
+            try (InputStream input = new BufferedInputStream(new FileInputStream(report))) {
+                final XMLStreamReader reader = factory.createXMLStreamReader(input);
+                try {
+                    readTestCases(reader, resultPerTest);
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException | XMLStreamException | NumberFormatException e) {
+                // a missing result only makes the history less accurate
+            }
+        }
+        return resultPerTest;
+    }
+
+    private static void readTestCases(XMLStreamReader reader, Map<String, TestCaseResult> resultPerTest) throws XMLStreamException {
+        String test = null;
+        double duration = 0.0D;
+        boolean failed = false;
+        while (reader.hasNext()) {
+            final int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                final String name = reader.getLocalName();
+                if (TEST_CASE.equals(name)) {
+                    final String time = reader.getAttributeValue(null, "time");
+                    final String testClassName = reader.getAttributeValue(null, "classname");
+                    final String testMethodName = reader.getAttributeValue(null, "name");
+                    test = testClassName == null || testMethodName == null ? null : testClassName + TEST_SEPARATOR + testMethodName;
+                    duration = time == null ? 0.0D : Double.parseDouble(time.replace(",", ""));
+                    failed = false;
+                } else if (test != null && ("failure".equals(name) || "error".equals(name))) {
+                    failed = true;
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && TEST_CASE.equals(reader.getLocalName()) && test != null) {
+                resultPerTest.put(test, new TestCaseResult(duration, failed));
+                test = null;
+            }
+        }
+    }
+
+    /**
+     * reads the name and the time of the root element, the rest of the report is not read
+     */
+    private static void readTestSuite(XMLStreamReader reader, Map<String, Double> durationPerTestClass) throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                if (TEST_SUITE.equals(reader.getLocalName())) {
+                    final String name = reader.getAttributeValue(null, "name");
+                    final String time = reader.getAttributeValue(null, "time");
+                    if (name != null && time != null) {
+                        // surefire may format the time with grouping separators, e.g. 1,234.5
+                        durationPerTestClass.merge(name, Double.parseDouble(time.replace(",", "")), Double::sum);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package eu.stamp_project.diff_test_selection;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * History of the runs of each test method: how many times it ran, how many times it failed, and how long its last
+ * run took. It is saved as one line per test method: runs, failures, duration in seconds, and the full qualified
+ * name of its class and its name, separated by #.
+ */
+class TestHistory {
+
+    private static final String TEST_SEPARATOR = "#";
+
+    private static class Entry {
+
+        private int runs;
+
+        private int failures;
+
+        private double duration;
+    }
+
+    private final Map<String, Entry> entryPerTest = new TreeMap<>();
+
+    /**
+     * @return the history saved in the given file, empty if there is none, or if it cannot be read
+     */
+    static TestHistory load(@Nullable File file) {
+        final TestHistory history = new TestHistory();
+        if (file == null || !file.exists()) {
+            return history;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] fields = line.split(" ", 4);
+                if (fields.length < 4) {
+                    continue;
+                }
+                final Entry entry = new Entry();
+                entry.runs = Integer.parseInt(fields[0]);
+                entry.failures = Integer.parseInt(fields[1]);
+                entry.duration = Double.parseDouble(fields[2]);
+                history.entryPerTest.put(fields[3], entry);
+            }
+        } catch (IOException | NumberFormatException e) {
+            return new TestHistory();
+        }
+        return history;
+    }
+
+    void save(File file) {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new RuntimeException("Could not create " + parent.getAbsolutePath());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : this.entryPerTest.entrySet()) {
+                writer.write(entry.getValue().runs + " " + entry.getValue().failures + " " + entry.getValue().duration + " " + entry.getKey());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * adds a run to the history of each given test
+     */
+    void record(Map<String, SurefireReports.TestCaseResult> resultPerTest) {
+        resultPerTest.forEach((test, result) -> {
+            final Entry entry = this.entryPerTest.computeIfAbsent(test, key -> new Entry());
+            entry.runs++;
+            if (result.failed) {
+                entry.failures++;
+            }
+            entry.duration = result.duration;
+        });
+    }
+
+    /**
+     * @return the ratio of the runs of the given test that failed, 0 if it never ran
+     */
+    double getFailureRate(String testClassName, String testMethodName) {
+        final Entry entry = this.entryPerTest.get(testClassName + TEST_SEPARATOR + testMethodName);
+        return entry == null || entry.runs == 0 ? 0.0D : (double) entry.failures / entry.runs;
+    }
+
+    /**
+     * @return the duration of the last run of the given test, in seconds, or null if it never ran
+     */
+    @Nullable
+    Double getDuration(String testClassName, String testMethodName) {
+        final Entry entry = this.entryPerTest.get(testClassName + TEST_SEPARATOR + testMethodName);
+        return entry == null ? null : entry.duration;
+    }
+
+}
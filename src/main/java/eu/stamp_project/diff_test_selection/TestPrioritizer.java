@@ -0,0 +1,141 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Ranks the selected tests, the ones that give the most signal per second first.
+ * <p>
+ * The signal of a test is the number of changes that it executes, increased by its historic failure rate: a test
+ * that often fails is more likely to detect a regression. It is divided by the duration of the test, so that, given a
+ * time budget, the ranked tests can be taken greedily.
+ */
+class TestPrioritizer {
+
+    /**
+     * a test that always failed counts as much as this number of tests that never failed
+     */
+    private static final double FAILURE_WEIGHT = 10.0D;
+
+    /**
+     * duration given to the tests that never ran, when no duration is known at all
+     */
+    private static final double DEFAULT_DURATION = 1.0D;
+
+    /**
+     * lower bound of the durations, so that instantaneous tests do not get an infinite priority
+     */
+    private static final double MINIMUM_DURATION = 0.001D;
+
+    private final CoverageIndex coverage;
+
+    private final TestHistory history;
+
+    private final Supplier<Map<String, Double>> durationPerTestSupplier;
+
+    private Map<String, Double> durationPerTest;
+
+    /**
+     * @param history                 the history of the runs of the tests
+     * @param durationPerTestSupplier durations of the tests that are used when neither the history nor the coverage
+     *                                has one, keyed by the full qualified name of the class of the test and its name,
+     *                                separated by #. They are only supplied if such a test is ranked
+     */
+    TestPrioritizer(CoverageIndex coverage, TestHistory history, Supplier<Map<String, Double>> durationPerTestSupplier) {
+        this.coverage = coverage;
+        this.history = history;
+        this.durationPerTestSupplier = durationPerTestSupplier;
+    }
+
+    /**
+     * @param numberOfChangesPerTest the number of changes executed by each test, indexed by test id
+     * @param timeBudget             the time available to run the tests, in seconds, not strictly positive for none
+     * @return the ids of the tests that execute at least one change and fit in the time budget, by decreasing priority
+     */
+    int[] prioritize(int[] numberOfChangesPerTest, double timeBudget) {
+        final List<Integer> testIds = new ArrayList<>();
+        for (int testId = 0; testId < numberOfChangesPerTest.length; testId++) {
+            if (numberOfChangesPerTest[testId] > 0) {
+                testIds.add(testId);
+            }
+        }
+        final double[] durations = this.getDurations(testIds);
+        final double[] priorities = new double[numberOfChangesPerTest.length];
+        for (int testId : testIds) {
+            final double failureRate = this.history.getFailureRate(
+                    this.coverage.getTestClassName(testId),
+                    this.coverage.getTestMethodName(testId)
+            );
+            priorities[testId] = numberOfChangesPerTest[testId] * (1.0D + FAILURE_WEIGHT * failureRate) /
+                    Math.max(durations[testId], MINIMUM_DURATION);
+        }
+        testIds.sort(Comparator.comparingDouble((Integer testId) -> priorities[testId]).reversed());
+        final int[] rankedTestIds = new int[testIds.size()];
+        int size = 0;
+        double remainingTime = timeBudget;
+        for (int testId : testIds) {
+            if (timeBudget > 0.0D) {
+                if (durations[testId] > remainingTime) {
+                    // a shorter test may still fit
+                    continue;
+                }
+                remainingTime -= durations[testId];
+            }
+            rankedTestIds[size++] = testId;
+        }
+        final int[] selectedTestIds = new int[size];
+        System.arraycopy(rankedTestIds, 0, selectedTestIds, 0, size);
+        return selectedTestIds;
+    }
+
+    /**
+     * @return the duration of each given test, the tests that never ran get the average duration of the others
+     */
+    private double[] getDurations(List<Integer> testIds) {
+        final double[] durations = new double[this.coverage.getNumberOfTests()];
+        double totalDuration = 0.0D;
+        int numberOfKnownDurations = 0;
+        final List<Integer> unknownDurations = new ArrayList<>();
+        for (int testId : testIds) {
+            final double duration = this.getDuration(testId);
+            if (duration == CoverageIndex.UNKNOWN_DURATION) {
+                unknownDurations.add(testId);
+            } else {
+                durations[testId] = duration;
+                totalDuration += duration;
+                numberOfKnownDurations++;
+            }
+        }
+        final double defaultDuration = numberOfKnownDurations == 0 ? DEFAULT_DURATION : totalDuration / numberOfKnownDurations;
+        for (int testId : unknownDurations) {
+            durations[testId] = defaultDuration;
+        }
+        return durations;
+    }
+
+    /**
+     * @return the duration of the given test, in seconds: the one of its last run in the history, or the one
+     * recorded with its coverage, or the given one, {@link CoverageIndex#UNKNOWN_DURATION} if there is none
+     */
+    double getDuration(int testId) {
+        final String testClassName = this.coverage.getTestClassName(testId);
+        final String testMethodName = this.coverage.getTestMethodName(testId);
+        final Double duration = this.history.getDuration(testClassName, testMethodName);
+        if (duration != null) {
+            return duration;
+        }
+        if (this.coverage.getTestDuration(testId) != CoverageIndex.UNKNOWN_DURATION) {
+            return this.coverage.getTestDuration(testId);
+        }
+        if (this.durationPerTest == null) {
+            this.durationPerTest = this.durationPerTestSupplier.get();
+        }
+        return this.durationPerTest.getOrDefault(testClassName + "#" + testMethodName, CoverageIndex.UNKNOWN_DURATION);
+    }
+
+}
@@ -0,0 +1,78 @@
+package eu.stamp_project.diff_test_selection.coverage;
+
+import java.util.Collection;
+
+/**
+ * Inverted view of the coverage: for each class of the program under test, and for each of its lines, gives the tests
+ * that execute it.
+ * <p>
+ * The index also knows the methods that are executed, identified by their start line, and the tests that execute
+ * each of them, to select tests at the granularity of methods.
+ * <p>
+ * Tests are identified by an int id, interned once per couple (test class, test method), ids are dense and start at 0.
+ */
+public interface CoverageIndex {
+
+    int[] NO_TESTS = new int[0];
+
+    double UNKNOWN_DURATION = -1.0D;
+
+    /**
+     * @return the number of interned tests, i.e. all the ids of the tests are in [0, getNumberOfTests()[
+     */
+    int getNumberOfTests();
+
+    /**
+     * @param testId the id of a test
+     * @return the full qualified name of the test class of the given test
+     */
+    String getTestClassName(int testId);
+
+    /**
+     * @param testId the id of a test
+     * @return the name of the test method of the given test
+     */
+    String getTestMethodName(int testId);
+
+    /**
+     * @param testId the id of a test
+     * @return the duration of the given test when its coverage has been recorded, in seconds,
+     * {@link #UNKNOWN_DURATION} if it is unknown
+     */
+    double getTestDuration(int testId);
+
+    /**
+     * @param className full qualified name of a class of the program under test
+     * @param line      a line of the given class
+     * @return the sorted ids of the tests that execute the given line, {@link #NO_TESTS} if there is none.
+     * The returned array must not be modified.
+     */
+    int[] getTestsThatExecute(String className, int line);
+
+    /**
+     * @param className full qualified name of a class of the program under test
+     * @return the start and end lines of the methods of the given class that are executed by at least one test,
+     * as consecutive pairs sorted by start line: [start0, end0, start1, end1, ...]
+     */
+    int[] getExecutedMethods(String className);
+
+    /**
+     * @param className full qualified name of a class of the program under test
+     * @param startLine the start line of a method of the given class
+     * @return the sorted ids of the tests that execute the method, {@link #NO_TESTS} if there is none.
+     * The returned array must not be modified.
+     */
+    int[] getTestsThatExecuteMethod(String className, int startLine);
+
+    /**
+     * @return the full qualified names of the classes executed by at least one test
+     */
+    Collection<String> getCoveredClassNames();
+
+    /**
+     * @param className full qualified name of a class of the program under test
+     * @return an upper bound (exclusive) of the lines of the given class that are executed by tests, 0 if none is
+     */
+    int getNumberOfLines(String className);
+
+}
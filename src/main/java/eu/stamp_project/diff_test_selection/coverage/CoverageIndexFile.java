@@ -0,0 +1,149 @@
+package eu.stamp_project.diff_test_selection.coverage;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary serialization of a {@link CoverageIndex}, meant to be memory-mapped by {@link MappedCoverageIndex}.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int magic, int version
+ * for each class:
+ *   int numberOfLines, int[numberOfLines + 1] start of the posting list of each line, int[] postings
+ *   int numberOfMethods, int[2 * numberOfMethods] start and end lines of each method,
+ *   int[numberOfMethods + 1] start of the posting list of each method, int[] postings
+ * String commit
+ * int numberOfTests, for each test: String testClassName, String testMethodName, double duration
+ * int numberOfClasses, for each class: String className, int offset of its block
+ * long offset of the commit, i.e. the start of the tables
+ * </pre>
+ * Strings are stored as their length followed by their UTF-8 bytes. Offsets are ints, as the positions of the
+ * {@link java.nio.MappedByteBuffer} that reads the file: an index cannot be larger than 2 GB.
+ */
+public class CoverageIndexFile {
+
+    static final int MAGIC = 0x44545349;
+
+    static final int VERSION = 3;
+
+    private static final String PREFIX = "coverage-";
+
+    private static final String EXTENSION = ".idx";
+
+    /**
+     * {@link DataOutputStream#size()} stops at this value when more bytes are written
+     */
+    static final long MAX_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * @return the index file of the given commit, in the given directory
+     */
+    public static File getIndexFile(File directory, String commit) {
+        return new File(directory, PREFIX + commit + EXTENSION);
+    }
+
+    /**
+     * Writes the given index in the given file. The file is first written aside, and then renamed, so a concurrent
+     * reader never sees a partial index.
+     */
+    public static void write(CoverageIndex coverage, String commit, File file) {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            throw new RuntimeException("Could not create " + parent.getAbsolutePath());
+        }
+        final File temporaryFile = new File(parent, file.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            final Map<String, Integer> offsetPerClass = new LinkedHashMap<>();
+            for (String className : coverage.getCoveredClassNames()) {
+                offsetPerClass.put(className, output.size());
+                writeClass(coverage, className, output);
+                checkSize(output);
+            }
+            final long tablesOffset = output.size();
+            writeString(commit, output);
+            output.writeInt(coverage.getNumberOfTests());
+            for (int testId = 0; testId < coverage.getNumberOfTests(); testId++) {
+                writeString(coverage.getTestClassName(testId), output);
+                writeString(coverage.getTestMethodName(testId), output);
+                output.writeDouble(coverage.getTestDuration(testId));
+            }
+            output.writeInt(offsetPerClass.size());
+            for (String className : offsetPerClass.keySet()) {
+                writeString(className, output);
+                output.writeInt(offsetPerClass.get(className));
+            }
+            output.writeLong(tablesOffset);
+            checkSize(output);
+        } catch (IOException e) {
+            if (!temporaryFile.delete()) {
+                temporaryFile.deleteOnExit();
+            }
+            throw new RuntimeException("Could not write " + file.getAbsolutePath(), e);
+        }
+        if (file.exists() && !file.delete() || !temporaryFile.renameTo(file)) {
+            throw new RuntimeException("Could not write " + file.getAbsolutePath());
+        }
+    }
+
+    private static void checkSize(DataOutputStream output) throws IOException {
+        if (output.size() >= MAX_SIZE) {
+            throw new IOException("The coverage index is larger than 2 GB, which is not supported");
+        }
+    }
+
+    private static void writeClass(CoverageIndex coverage, String className, DataOutputStream output) throws IOException {
+        final int numberOfLines = coverage.getNumberOfLines(className);
+        final List<int[]> postings = new ArrayList<>(numberOfLines);
+        output.writeInt(numberOfLines);
+        int start = 0;
+        for (int line = 0; line < numberOfLines; line++) {
+            final int[] tests = coverage.getTestsThatExecute(className, line);
+            postings.add(tests);
+            output.writeInt(start);
+            start += tests.length;
+        }
+        output.writeInt(start);
+        writePostings(postings, output);
+        final int[] methods = coverage.getExecutedMethods(className);
+        postings.clear();
+        output.writeInt(methods.length / 2);
+        for (int line : methods) {
+            output.writeInt(line);
+        }
+        start = 0;
+        for (int i = 0; i < methods.length; i += 2) {
+            final int[] tests = coverage.getTestsThatExecuteMethod(className, methods[i]);
+            postings.add(tests);
+            output.writeInt(start);
+            start += tests.length;
+        }
+        output.writeInt(start);
+        writePostings(postings, output);
+    }
+
+    private static void writePostings(List<int[]> postings, DataOutputStream output) throws IOException {
+        for (int[] tests : postings) {
+            for (int test : tests) {
+                output.writeInt(test);
+            }
+        }
+    }
+
+    private static void writeString(String value, DataOutputStream output) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+}
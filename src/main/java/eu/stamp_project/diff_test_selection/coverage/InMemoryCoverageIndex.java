@@ -0,0 +1,315 @@
+package eu.stamp_project.diff_test_selection.coverage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link CoverageIndex} built in memory, while reading the coverage.
+ * <p>
+ * For each class, the tests are stored per line in plain int arrays (posting lists), so the look up of a line is a
+ * direct array access. Methods are stored the same way, by their start line. Posting lists are sorted and
+ * deduplicated lazily, the first time the class is queried.
+ * Mutators are synchronized, so the index can be filled from several threads.
+ */
+public class InMemoryCoverageIndex implements CoverageIndex {
+
+    private static final String TEST_SEPARATOR = "#";
+
+    private final List<String> testClassNames;
+
+    private final List<String> testMethodNames;
+
+    private final List<Double> testDurations;
+
+    private final Map<String, Integer> idPerTest;
+
+    private final Map<String, ClassCoverage> coveragePerClass;
+
+    public InMemoryCoverageIndex() {
+        this.testClassNames = new ArrayList<>();
+        this.testMethodNames = new ArrayList<>();
+        this.testDurations = new ArrayList<>();
+        this.idPerTest = new HashMap<>();
+        this.coveragePerClass = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return the id of the given test, interning it if it is the first time that it is seen
+     */
+    public synchronized int getTestId(String testClassName, String testMethodName) {
+        final String key = testClassName + TEST_SEPARATOR + testMethodName;
+        final Integer id = this.idPerTest.get(key);
+        if (id != null) {
+            return id;
+        }
+        final int newId = this.testClassNames.size();
+        this.testClassNames.add(testClassName);
+        this.testMethodNames.add(testMethodName);
+        this.testDurations.add(UNKNOWN_DURATION);
+        this.idPerTest.put(key, newId);
+        return newId;
+    }
+
+    /**
+     * records the duration of the given test, in seconds
+     */
+    public synchronized void setTestDuration(int testId, double duration) {
+        this.testDurations.set(testId, duration);
+    }
+
+    /**
+     * records that the given test executes the given line of the given class
+     */
+    public synchronized void addCoverage(int testId, String className, int line) {
+        this.getClassCoverage(className).lines.add(line, testId);
+    }
+
+    /**
+     * records that the given test executes the given lines of the given class, in one go
+     */
+    public synchronized void addCoverage(int testId, String className, BitSet lines) {
+        final PostingLists postingLists = this.getClassCoverage(className).lines;
+        for (int line = lines.nextSetBit(0); line >= 0; line = lines.nextSetBit(line + 1)) {
+            postingLists.add(line, testId);
+        }
+    }
+
+    public void addCoverage(String testClassName, String testMethodName, String className, int line) {
+        this.addCoverage(this.getTestId(testClassName, testMethodName), className, line);
+    }
+
+    /**
+     * records that the given test executes the method of the given class that goes from startLine to endLine
+     */
+    public synchronized void addMethodCoverage(int testId, String className, int startLine, int endLine) {
+        final ClassCoverage classCoverage = this.getClassCoverage(className);
+        classCoverage.methods.add(startLine, testId);
+        classCoverage.setEndLine(startLine, endLine);
+    }
+
+    private ClassCoverage getClassCoverage(String className) {
+        ClassCoverage classCoverage = this.coveragePerClass.get(className);
+        if (classCoverage == null) {
+            classCoverage = new ClassCoverage();
+            this.coveragePerClass.put(className, classCoverage);
+        }
+        return classCoverage;
+    }
+
+    /**
+     * Copies the coverage of the given index into this one, except the coverage of the given test classes and the
+     * coverage of the given classes under test. Ids are interned again, tests that are not copied are not interned.
+     *
+     * @param coverage               the index to copy
+     * @param excludedTestClassNames full qualified names of the test classes whose coverage is not copied
+     * @param excludedClassNames     full qualified names of the classes under test whose coverage is not copied
+     */
+    public void addAll(CoverageIndex coverage, Set<String> excludedTestClassNames, Set<String> excludedClassNames) {
+        final int unknown = -2;
+        final int excluded = -1;
+        final int[] newIds = new int[coverage.getNumberOfTests()];
+        Arrays.fill(newIds, unknown);
+        for (String className : coverage.getCoveredClassNames()) {
+            if (excludedClassNames.contains(className)) {
+                continue;
+            }
+            final int numberOfLines = coverage.getNumberOfLines(className);
+            for (int line = 0; line < numberOfLines; line++) {
+                for (int testId : coverage.getTestsThatExecute(className, line)) {
+                    if (newIds[testId] == unknown) {
+                        newIds[testId] = this.getNewId(coverage, testId, excludedTestClassNames);
+                    }
+                    if (newIds[testId] != excluded) {
+                        this.addCoverage(newIds[testId], className, line);
+                    }
+                }
+            }
+            final int[] methods = coverage.getExecutedMethods(className);
+            for (int i = 0; i < methods.length; i += 2) {
+                for (int testId : coverage.getTestsThatExecuteMethod(className, methods[i])) {
+                    if (newIds[testId] == unknown) {
+                        newIds[testId] = this.getNewId(coverage, testId, excludedTestClassNames);
+                    }
+                    if (newIds[testId] != excluded) {
+                        this.addMethodCoverage(newIds[testId], className, methods[i], methods[i + 1]);
+                    }
+                }
+            }
+        }
+    }
+
+    private int getNewId(CoverageIndex coverage, int testId, Set<String> excludedTestClassNames) {
+        final String testClassName = coverage.getTestClassName(testId);
+        if (excludedTestClassNames.contains(testClassName)) {
+            return -1;
+        }
+        final int newId = this.getTestId(testClassName, coverage.getTestMethodName(testId));
+        if (coverage.getTestDuration(testId) != UNKNOWN_DURATION) {
+            this.setTestDuration(newId, coverage.getTestDuration(testId));
+        }
+        return newId;
+    }
+
+    @Override
+    public synchronized int getNumberOfTests() {
+        return this.testClassNames.size();
+    }
+
+    @Override
+    public synchronized String getTestClassName(int testId) {
+        return this.testClassNames.get(testId);
+    }
+
+    @Override
+    public synchronized String getTestMethodName(int testId) {
+        return this.testMethodNames.get(testId);
+    }
+
+    @Override
+    public synchronized double getTestDuration(int testId) {
+        return this.testDurations.get(testId);
+    }
+
+    @Override
+    public synchronized int[] getTestsThatExecute(String className, int line) {
+        final ClassCoverage classCoverage = this.coveragePerClass.get(className);
+        if (classCoverage == null) {
+            return NO_TESTS;
+        }
+        return classCoverage.lines.get(line);
+    }
+
+    @Override
+    public synchronized int[] getExecutedMethods(String className) {
+        final ClassCoverage classCoverage = this.coveragePerClass.get(className);
+        if (classCoverage == null) {
+            return NO_TESTS;
+        }
+        final int[] methods = new int[classCoverage.numberOfMethods * 2];
+        int index = 0;
+        for (int startLine = 0; startLine < classCoverage.endLinePerStartLine.length; startLine++) {
+            if (classCoverage.endLinePerStartLine[startLine] > 0) {
+                methods[index++] = startLine;
+                methods[index++] = classCoverage.endLinePerStartLine[startLine];
+            }
+        }
+        return methods;
+    }
+
+    @Override
+    public synchronized int[] getTestsThatExecuteMethod(String className, int startLine) {
+        final ClassCoverage classCoverage = this.coveragePerClass.get(className);
+        if (classCoverage == null) {
+            return NO_TESTS;
+        }
+        return classCoverage.methods.get(startLine);
+    }
+
+    @Override
+    public synchronized Collection<String> getCoveredClassNames() {
+        return new ArrayList<>(this.coveragePerClass.keySet());
+    }
+
+    @Override
+    public synchronized int getNumberOfLines(String className) {
+        final ClassCoverage classCoverage = this.coveragePerClass.get(className);
+        return classCoverage == null ? 0 : classCoverage.lines.testsPerLine.length;
+    }
+
+    /**
+     * Coverage of one class: the posting lists of its lines, and the ones of its methods.
+     */
+    private static class ClassCoverage {
+
+        private final PostingLists lines = new PostingLists();
+
+        private final PostingLists methods = new PostingLists();
+
+        private int[] endLinePerStartLine = new int[0];
+
+        private int numberOfMethods = 0;
+
+        void setEndLine(int startLine, int endLine) {
+            if (startLine >= this.endLinePerStartLine.length) {
+                this.endLinePerStartLine = Arrays.copyOf(this.endLinePerStartLine,
+                        Math.max(startLine + 1, this.endLinePerStartLine.length * 2));
+            }
+            if (this.endLinePerStartLine[startLine] == 0) {
+                this.numberOfMethods++;
+            }
+            this.endLinePerStartLine[startLine] = Math.max(endLine, startLine);
+        }
+    }
+
+    /**
+     * Posting lists, indexed by line.
+     */
+    private static class PostingLists {
+
+        private static final int INITIAL_CAPACITY = 2;
+
+        private int[][] testsPerLine = new int[0][];
+
+        private int[] sizes = new int[0];
+
+        private boolean compacted = true;
+
+        void add(int line, int testId) {
+            if (line >= this.testsPerLine.length) {
+                final int newLength = Math.max(line + 1, this.testsPerLine.length * 2);
+                this.testsPerLine = Arrays.copyOf(this.testsPerLine, newLength);
+                this.sizes = Arrays.copyOf(this.sizes, newLength);
+            }
+            int[] tests = this.testsPerLine[line];
+            if (tests == null) {
+                tests = new int[INITIAL_CAPACITY];
+                this.testsPerLine[line] = tests;
+            } else if (this.sizes[line] == tests.length) {
+                tests = Arrays.copyOf(tests, tests.length * 2);
+                this.testsPerLine[line] = tests;
+            }
+            tests[this.sizes[line]++] = testId;
+            this.compacted = false;
+        }
+
+        int[] get(int line) {
+            if (line < 0 || line >= this.testsPerLine.length || this.testsPerLine[line] == null) {
+                return NO_TESTS;
+            }
+            if (!this.compacted) {
+                this.compact();
+            }
+            return this.testsPerLine[line];
+        }
+
+        /**
+         * sorts and deduplicates every posting list, and trims them to their size
+         */
+        private void compact() {
+            for (int line = 0; line < this.testsPerLine.length; line++) {
+                final int[] tests = this.testsPerLine[line];
+                if (tests == null) {
+                    continue;
+                }
+                Arrays.sort(tests, 0, this.sizes[line]);
+                int size = 0;
+                for (int i = 0; i < this.sizes[line]; i++) {
+                    if (size == 0 || tests[size - 1] != tests[i]) {
+                        tests[size++] = tests[i];
+                    }
+                }
+                this.testsPerLine[line] = size == tests.length ? tests : Arrays.copyOf(tests, size);
+                this.sizes[line] = size;
+            }
+            this.compacted = true;
+        }
+    }
+
+}
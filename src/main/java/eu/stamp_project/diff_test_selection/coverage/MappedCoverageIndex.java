@@ -0,0 +1,216 @@
+package eu.stamp_project.diff_test_selection.coverage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link CoverageIndex} queried directly from a memory-mapped file written by {@link CoverageIndexFile}.
+ * <p>
+ * Only the names of the tests and the table of the classes are decoded when the file is opened, posting lists are
+ * read from the mapping on demand. Reads use absolute positions, so an instance can be queried from several threads.
+ * <p>
+ * A mapped file cannot be deleted on some systems, e.g. Windows, until the mapping is garbage collected:
+ * {@link #load(File)} reads the file in memory instead, when it may be deleted while the index is used.
+ */
+public class MappedCoverageIndex implements CoverageIndex {
+
+    private final ByteBuffer buffer;
+
+    private final String commit;
+
+    private final String[] testClassNames;
+
+    private final String[] testMethodNames;
+
+    private final double[] testDurations;
+
+    private final Map<String, Integer> offsetPerClass;
+
+    private MappedCoverageIndex(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != CoverageIndexFile.MAGIC || buffer.getInt(4) != CoverageIndexFile.VERSION) {
+            throw new IllegalArgumentException("Not a coverage index, or written by another version");
+        }
+        final ByteBuffer tables = buffer.duplicate();
+        tables.position((int) buffer.getLong(buffer.limit() - Long.BYTES));
+        this.commit = readString(tables);
+        final int numberOfTests = tables.getInt();
+        this.testClassNames = new String[numberOfTests];
+        this.testMethodNames = new String[numberOfTests];
+        this.testDurations = new double[numberOfTests];
+        for (int testId = 0; testId < numberOfTests; testId++) {
+            this.testClassNames[testId] = readString(tables);
+            this.testMethodNames[testId] = readString(tables);
+            this.testDurations[testId] = tables.getDouble();
+        }
+        final int numberOfClasses = tables.getInt();
+        this.offsetPerClass = new HashMap<>(numberOfClasses * 2);
+        for (int i = 0; i < numberOfClasses; i++) {
+            final String className = readString(tables);
+            this.offsetPerClass.put(className, tables.getInt());
+        }
+    }
+
+    /**
+     * maps the given index file
+     */
+    public static MappedCoverageIndex open(File file) {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            if (channel.size() >= CoverageIndexFile.MAX_SIZE) {
+                throw new IllegalArgumentException(file.getAbsolutePath() + " is larger than 2 GB, which is not supported");
+            }
+            // the mapping stays valid once the channel is closed
+            return new MappedCoverageIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * reads the given index file in memory, so the file is not held open, nor mapped, once this method returns
+     */
+    public static MappedCoverageIndex load(File file) {
+        try {
+            return new MappedCoverageIndex(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the commit of the program on which the coverage has been computed
+     */
+    public String getCommit() {
+        return this.commit;
+    }
+
+    @Override
+    public int getNumberOfTests() {
+        return this.testClassNames.length;
+    }
+
+    @Override
+    public String getTestClassName(int testId) {
+        return this.testClassNames[testId];
+    }
+
+    @Override
+    public String getTestMethodName(int testId) {
+        return this.testMethodNames[testId];
+    }
+
+    @Override
+    public double getTestDuration(int testId) {
+        return this.testDurations[testId];
+    }
+
+    @Override
+    public int[] getTestsThatExecute(String className, int line) {
+        final Integer offset = this.offsetPerClass.get(className);
+        if (offset == null) {
+            return NO_TESTS;
+        }
+        final int numberOfLines = this.buffer.getInt(offset);
+        if (line < 0 || line >= numberOfLines) {
+            return NO_TESTS;
+        }
+        return this.readPostings(offset + Integer.BYTES, numberOfLines, line);
+    }
+
+    @Override
+    public int[] getExecutedMethods(String className) {
+        final Integer offset = this.offsetPerClass.get(className);
+        if (offset == null) {
+            return NO_TESTS;
+        }
+        final int methodsOffset = this.getMethodsOffset(offset);
+        final int[] methods = new int[this.buffer.getInt(methodsOffset) * 2];
+        for (int i = 0; i < methods.length; i++) {
+            methods[i] = this.buffer.getInt(methodsOffset + (i + 1) * Integer.BYTES);
+        }
+        return methods;
+    }
+
+    @Override
+    public int[] getTestsThatExecuteMethod(String className, int startLine) {
+        final Integer offset = this.offsetPerClass.get(className);
+        if (offset == null) {
+            return NO_TESTS;
+        }
+        final int methodsOffset = this.getMethodsOffset(offset);
+        final int numberOfMethods = this.buffer.getInt(methodsOffset);
+        // methods are sorted by start line
+        int low = 0;
+        int high = numberOfMethods - 1;
+        while (low <= high) {
+            final int middle = (low + high) >>> 1;
+            final int middleStartLine = this.buffer.getInt(methodsOffset + (2 * middle + 1) * Integer.BYTES);
+            if (middleStartLine < startLine) {
+                low = middle + 1;
+            } else if (middleStartLine > startLine) {
+                high = middle - 1;
+            } else {
+                return this.readPostings(methodsOffset + (2 * numberOfMethods + 1) * Integer.BYTES, numberOfMethods, middle);
+            }
+        }
+        return NO_TESTS;
+    }
+
+    /**
+     * @return the offset of the methods of the class whose block starts at the given offset, i.e. the end of the
+     * posting lists of its lines
+     */
+    private int getMethodsOffset(int offset) {
+        final int numberOfLines = this.buffer.getInt(offset);
+        final int startsOffset = offset + Integer.BYTES;
+        final int numberOfPostings = this.buffer.getInt(startsOffset + numberOfLines * Integer.BYTES);
+        return startsOffset + (numberOfLines + 1 + numberOfPostings) * Integer.BYTES;
+    }
+
+    /**
+     * @param startsOffset offset of the starts of a table of posting lists, followed by its postings
+     * @param size         number of posting lists of the table
+     * @param index        index of the posting list to read
+     */
+    private int[] readPostings(int startsOffset, int size, int index) {
+        final int start = this.buffer.getInt(startsOffset + index * Integer.BYTES);
+        final int end = this.buffer.getInt(startsOffset + (index + 1) * Integer.BYTES);
+        if (start == end) {
+            return NO_TESTS;
+        }
+        final int postingsOffset = startsOffset + (size + 1) * Integer.BYTES;
+        final int[] tests = new int[end - start];
+        for (int i = 0; i < tests.length; i++) {
+            tests[i] = this.buffer.getInt(postingsOffset + (start + i) * Integer.BYTES);
+        }
+        return tests;
+    }
+
+    @Override
+    public Collection<String> getCoveredClassNames() {
+        return new ArrayList<>(this.offsetPerClass.keySet());
+    }
+
+    @Override
+    public int getNumberOfLines(String className) {
+        final Integer offset = this.offsetPerClass.get(className);
+        return offset == null ? 0 : this.buffer.getInt(offset);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
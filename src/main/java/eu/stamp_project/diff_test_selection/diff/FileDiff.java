@@ -0,0 +1,88 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The changes of one file in a unified diff.
+ */
+public class FileDiff {
+
+    public enum Type {
+        ADDED,
+        DELETED,
+        MODIFIED,
+        RENAMED,
+        COPIED
+    }
+
+    private String oldPath;
+
+    private String newPath;
+
+    private Type type;
+
+    private boolean binary;
+
+    private final List<Hunk> hunks;
+
+    public FileDiff(String oldPath, String newPath) {
+        this.oldPath = oldPath;
+        this.newPath = newPath;
+        this.type = Type.MODIFIED;
+        this.binary = false;
+        this.hunks = new ArrayList<>();
+    }
+
+    /**
+     * @return the path of the old version of the file, relative to the root of the diff, null if the file is added
+     */
+    @Nullable
+    public String getOldPath() {
+        return oldPath;
+    }
+
+    /**
+     * @return the path of the new version of the file, relative to the root of the diff, null if the file is deleted
+     */
+    @Nullable
+    public String getNewPath() {
+        return newPath;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public List<Hunk> getHunks() {
+        return hunks;
+    }
+
+    void setOldPath(String oldPath) {
+        this.oldPath = oldPath;
+    }
+
+    void setNewPath(String newPath) {
+        this.newPath = newPath;
+    }
+
+    void setType(Type type) {
+        this.type = type;
+    }
+
+    void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    @Override
+    public String toString() {
+        return this.type + " " + (this.oldPath == null ? this.newPath :
+                this.newPath == null || this.newPath.equals(this.oldPath) ? this.oldPath : this.oldPath + " -> " + this.newPath);
+    }
+}
@@ -0,0 +1,157 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A hunk of a unified diff, i.e. its header "@@ -oldStart,oldLength +newStart,newLength @@" and its lines.
+ * <p>
+ * The hunk knows how many old and new lines it must contain, so its body is read without looking at the prefix of
+ * the following lines: a removed line starting with "--" is not mistaken for the header of another file.
+ */
+public class Hunk {
+
+    private static final Pattern HEADER = Pattern.compile("^@@ -(\\d+)(?:,(\\d+))? \\+(\\d+)(?:,(\\d+))? @@.*$");
+
+    private static final char CONTEXT = ' ';
+
+    private static final char REMOVED = '-';
+
+    private static final char ADDED = '+';
+
+    private final int oldStart;
+
+    private final int oldLength;
+
+    private final int newStart;
+
+    private final int newLength;
+
+    private final List<String> lines;
+
+    private int remainingOldLines;
+
+    private int remainingNewLines;
+
+    public Hunk(int oldStart, int oldLength, int newStart, int newLength) {
+        this.oldStart = oldStart;
+        this.oldLength = oldLength;
+        this.newStart = newStart;
+        this.newLength = newLength;
+        this.lines = new ArrayList<>();
+        this.remainingOldLines = oldLength;
+        this.remainingNewLines = newLength;
+    }
+
+    /**
+     * @param header a line of a unified diff
+     * @return the hunk started by the given line, or null if the line is not a hunk header
+     */
+    public static Hunk parseHeader(String header) {
+        final Matcher matcher = HEADER.matcher(header);
+        if (!matcher.matches()) {
+            return null;
+        }
+        return new Hunk(
+                Integer.parseInt(matcher.group(1)),
+                matcher.group(2) == null ? 1 : Integer.parseInt(matcher.group(2)),
+                Integer.parseInt(matcher.group(3)),
+                matcher.group(4) == null ? 1 : Integer.parseInt(matcher.group(4))
+        );
+    }
+
+    /**
+     * adds a line of the body of this hunk. "\ No newline at end of file" markers are ignored, and empty lines are
+     * considered as context lines, since some tools strip their trailing space.
+     */
+    public void addLine(String line) {
+        if (line.startsWith("\\")) {
+            return;
+        }
+        final String bodyLine = line.isEmpty() ? String.valueOf(CONTEXT) : line;
+        switch (bodyLine.charAt(0)) {
+            case REMOVED:
+                this.remainingOldLines--;
+                break;
+            case ADDED:
+                this.remainingNewLines--;
+                break;
+            default:
+                this.remainingOldLines--;
+                this.remainingNewLines--;
+        }
+        this.lines.add(bodyLine);
+    }
+
+    /**
+     * @return true if all the lines announced by the header have been added
+     */
+    public boolean isComplete() {
+        return this.remainingOldLines <= 0 && this.remainingNewLines <= 0;
+    }
+
+    /**
+     * Computes the lines of the old version that are changed by this hunk: the removed lines, and, for the lines that
+     * are only added, the old lines that surround the insertion.
+     *
+     * @param changedLines receives the changed lines of the old version
+     * @return true if this hunk contains at least one pure insertion, i.e. added lines that do not replace any line
+     */
+    public boolean collectChangedOldLines(List<Integer> changedLines) {
+        boolean hasPureInsertion = false;
+        int oldLine = this.oldStart;
+        int index = 0;
+        while (index < this.lines.size()) {
+            if (this.lines.get(index).charAt(0) == CONTEXT) {
+                oldLine++;
+                index++;
+                continue;
+            }
+            // a block of consecutive removed and added lines
+            boolean hasRemovedLines = false;
+            final int startOfBlock = oldLine;
+            while (index < this.lines.size() && this.lines.get(index).charAt(0) != CONTEXT) {
+                if (this.lines.get(index).charAt(0) == REMOVED) {
+                    changedLines.add(oldLine++);
+                    hasRemovedLines = true;
+                }
+                index++;
+            }
+            if (!hasRemovedLines) {
+                hasPureInsertion = true;
+                if (startOfBlock > 1) {
+                    changedLines.add(startOfBlock - 1);
+                }
+                if (startOfBlock < this.oldStart + this.oldLength) {
+                    changedLines.add(startOfBlock);
+                }
+            }
+        }
+        return hasPureInsertion;
+    }
+
+    public int getOldStart() {
+        return oldStart;
+    }
+
+    public int getOldLength() {
+        return oldLength;
+    }
+
+    public int getNewStart() {
+        return newStart;
+    }
+
+    public int getNewLength() {
+        return newLength;
+    }
+
+    /**
+     * @return the lines of the body of this hunk, each starting with ' ', '-' or '+'
+     */
+    public List<String> getLines() {
+        return lines;
+    }
+}
@@ -0,0 +1,253 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Cheap scanner of a java source file, used instead of a full Spoon model when only the declarations are needed.
+ * It skips comments, strings and character literals, and tracks braces and parentheses to find:
+ * <ul>
+ * <li>the declared package,</li>
+ * <li>the top-level types, with the lines of their declaration and of the end of their body,</li>
+ * <li>the lines that contain code, i.e. that are neither blank nor only made of comments.</li>
+ * </ul>
+ * The scanner never fails: on a source it cannot make sense of, e.g. with unbalanced braces, it reports it through
+ * {@link #isWellFormed()}.
+ */
+public class JavaDeclarationScanner {
+
+    /**
+     * A top-level type, from the line of its first keyword to the line of the brace that closes its body.
+     */
+    public static class TypeDeclaration {
+
+        private final String simpleName;
+
+        private final int startLine;
+
+        private int endLine;
+
+        TypeDeclaration(String simpleName, int startLine) {
+            this.simpleName = simpleName;
+            this.startLine = startLine;
+        }
+
+        public String getSimpleName() {
+            return simpleName;
+        }
+
+        public int getStartLine() {
+            return startLine;
+        }
+
+        public int getEndLine() {
+            return endLine;
+        }
+
+        public boolean contains(int line) {
+            return this.startLine <= line && line <= this.endLine;
+        }
+    }
+
+    private final String source;
+
+    private final List<TypeDeclaration> topLevelTypes = new ArrayList<>();
+
+    private final BitSet codeLines = new BitSet();
+
+    private final StringBuilder packageName = new StringBuilder();
+
+    private boolean wellFormed = true;
+
+    public JavaDeclarationScanner(String source) {
+        this.source = source;
+        this.scan();
+    }
+
+    public String getPackageName() {
+        return this.packageName.toString();
+    }
+
+    public List<TypeDeclaration> getTopLevelTypes() {
+        return topLevelTypes;
+    }
+
+    public boolean isCodeLine(int line) {
+        return this.codeLines.get(line);
+    }
+
+    public boolean isWellFormed() {
+        return wellFormed;
+    }
+
+    /**
+     * @return the top-level type that contains the given line, or null if the line is outside of every top-level type
+     */
+    public TypeDeclaration getTopLevelTypeAt(int line) {
+        for (TypeDeclaration topLevelType : this.topLevelTypes) {
+            if (topLevelType.contains(line)) {
+                return topLevelType;
+            }
+        }
+        return null;
+    }
+
+    private void scan() {
+        final int length = this.source.length();
+        int line = 1;
+        int braceDepth = 0;
+        int parenthesisDepth = 0;
+        // state of the declarations at depth 0
+        boolean readingPackage = false;
+        boolean expectingTypeName = false;
+        int pendingTypeLine = -1;
+        TypeDeclaration currentType = null;
+        char previousSignificantChar = 0;
+        int index = 0;
+        while (index < length) {
+            final char current = this.source.charAt(index);
+            final char next = index + 1 < length ? this.source.charAt(index + 1) : 0;
+            if (current == '\n') {
+                line++;
+                index++;
+                continue;
+            }
+            if (Character.isWhitespace(current)) {
+                index++;
+                continue;
+            }
+            if (current == '/' && next == '/') {
+                index = this.source.indexOf('\n', index);
+                index = index < 0 ? length : index;
+                continue;
+            }
+            if (current == '/' && next == '*') {
+                final int end = this.source.indexOf("*/", index + 2);
+                final int endOfComment = end < 0 ? length : end + 2;
+                line += this.countLines(index, endOfComment);
+                index = endOfComment;
+                continue;
+            }
+            this.codeLines.set(line);
+            if (current == '"' || current == '\'') {
+                final int endOfLiteral = this.skipLiteral(index);
+                line += this.countLines(index, endOfLiteral);
+                index = endOfLiteral;
+                previousSignificantChar = current;
+                continue;
+            }
+            if (Character.isJavaIdentifierStart(current)) {
+                int endOfWord = index + 1;
+                while (endOfWord < length && Character.isJavaIdentifierPart(this.source.charAt(endOfWord))) {
+                    endOfWord++;
+                }
+                final String word = this.source.substring(index, endOfWord);
+                if (braceDepth == 0 && parenthesisDepth == 0) {
+                    if (readingPackage) {
+                        this.packageName.append(word);
+                    } else if (expectingTypeName) {
+                        currentType = new TypeDeclaration(word, pendingTypeLine);
+                        expectingTypeName = false;
+                    } else if ("package".equals(word) && this.topLevelTypes.isEmpty() && currentType == null) {
+                        readingPackage = true;
+                    } else if (isTypeKeyword(word) && previousSignificantChar != '.' && currentType == null) {
+                        expectingTypeName = true;
+                        pendingTypeLine = pendingTypeLine < 0 ? line : pendingTypeLine;
+                    } else if (isModifier(word) && pendingTypeLine < 0) {
+                        pendingTypeLine = line;
+                    }
+                }
+                previousSignificantChar = 'a';
+                index = endOfWord;
+                continue;
+            }
+            if (braceDepth == 0 && parenthesisDepth == 0) {
+                if (readingPackage) {
+                    if (current == '.') {
+                        this.packageName.append('.');
+                    } else if (current == ';') {
+                        readingPackage = false;
+                    }
+                } else if (current == '@' && pendingTypeLine < 0) {
+                    pendingTypeLine = line;
+                } else if (current == ';') {
+                    pendingTypeLine = -1;
+                }
+            }
+            switch (current) {
+                case '(':
+                    parenthesisDepth++;
+                    break;
+                case ')':
+                    parenthesisDepth--;
+                    break;
+                case '{':
+                    braceDepth++;
+                    break;
+                case '}':
+                    braceDepth--;
+                    if (braceDepth == 0 && currentType != null) {
+                        currentType.endLine = line;
+                        this.topLevelTypes.add(currentType);
+                        currentType = null;
+                        pendingTypeLine = -1;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            if (braceDepth < 0 || parenthesisDepth < 0) {
+                this.wellFormed = false;
+                return;
+            }
+            previousSignificantChar = current;
+            index++;
+        }
+        this.wellFormed = braceDepth == 0 && parenthesisDepth == 0 && currentType == null && !expectingTypeName;
+    }
+
+    /**
+     * @return the index that follows the string, text block or character literal that starts at the given index
+     */
+    private int skipLiteral(int start) {
+        final char delimiter = this.source.charAt(start);
+        if (delimiter == '"' && this.source.startsWith("\"\"\"", start)) {
+            final int end = this.source.indexOf("\"\"\"", start + 3);
+            return end < 0 ? this.source.length() : end + 3;
+        }
+        int index = start + 1;
+        while (index < this.source.length()) {
+            final char current = this.source.charAt(index);
+            if (current == '\\') {
+                index += 2;
+            } else if (current == delimiter || current == '\n') {
+                return index + 1;
+            } else {
+                index++;
+            }
+        }
+        return this.source.length();
+    }
+
+    private int countLines(int start, int end) {
+        int lines = 0;
+        for (int index = start; index < end; index++) {
+            if (this.source.charAt(index) == '\n') {
+                lines++;
+            }
+        }
+        return lines;
+    }
+
+    private static boolean isTypeKeyword(String word) {
+        return "class".equals(word) || "interface".equals(word) || "enum".equals(word) || "record".equals(word);
+    }
+
+    private static boolean isModifier(String word) {
+        return "public".equals(word) || "protected".equals(word) || "private".equals(word) ||
+                "abstract".equals(word) || "final".equals(word) || "static".equals(word) ||
+                "strictfp".equals(word) || "sealed".equals(word) || "non".equals(word);
+    }
+
+}
@@ -0,0 +1,70 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the line ranges of the hunks of a {@link FileDiff} to the class that owns them, using a
+ * {@link JavaDeclarationScanner} on the old version of the file instead of building a Spoon model.
+ * <p>
+ * As Clover, the owner of a line is identified by the package of the file and the name of the file.
+ * Changed lines that contain no code, i.e. blank lines and comments, are ignored.
+ * The changed lines are raw lines of the hunks, that may not be recorded in the coverage, e.g. the second line of a
+ * statement, or an else: at the line granularity, the selection falls back to the tests of their enclosing method.
+ */
+public class LineChangeDetector {
+
+    private static final String JAVA_EXTENSION = ".java";
+
+    /**
+     * @param oldFile  the old version of the changed file
+     * @param fileDiff the changes of the file
+     * @param lenient  if false, null is returned when the mapping is ambiguous
+     * @return the modified lines per full qualified name, or null if the mapping is ambiguous and lenient is false.
+     * The mapping is ambiguous when the file cannot be scanned, when a hunk only adds lines, since the lines around the
+     * insertion may not be the ones that are executed, or when a changed line is outside of every top-level type.
+     */
+    public Map<String, List<Integer>> getModifiedLinesPerQualifiedName(File oldFile, FileDiff fileDiff, boolean lenient) {
+        final Map<String, List<Integer>> modifiedLinesPerQualifiedName = new LinkedHashMap<>();
+        if (!oldFile.getName().endsWith(JAVA_EXTENSION) || !oldFile.exists()) {
+            return modifiedLinesPerQualifiedName;
+        }
+        final JavaDeclarationScanner scanner;
+        try {
+            scanner = new JavaDeclarationScanner(new String(Files.readAllBytes(oldFile.toPath()), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (!scanner.isWellFormed() && !lenient) {
+            return null;
+        }
+        final List<Integer> changedLines = new ArrayList<>();
+        boolean ambiguous = false;
+        for (Hunk hunk : fileDiff.getHunks()) {
+            ambiguous |= hunk.collectChangedOldLines(changedLines);
+        }
+        final String simpleName = oldFile.getName().substring(0, oldFile.getName().length() - JAVA_EXTENSION.length());
+        final String qualifiedName = scanner.getPackageName().isEmpty() ? simpleName : scanner.getPackageName() + "." + simpleName;
+        for (Integer changedLine : changedLines) {
+            if (!scanner.isCodeLine(changedLine)) {
+                continue;
+            }
+            if (scanner.getTopLevelTypeAt(changedLine) == null) {
+                ambiguous = true;
+                continue;
+            }
+            if (!modifiedLinesPerQualifiedName.containsKey(qualifiedName)) {
+                modifiedLinesPerQualifiedName.put(qualifiedName, new ArrayList<>());
+            }
+            modifiedLinesPerQualifiedName.get(qualifiedName).add(changedLine);
+        }
+        return ambiguous && !lenient ? null : modifiedLinesPerQualifiedName;
+    }
+
+}
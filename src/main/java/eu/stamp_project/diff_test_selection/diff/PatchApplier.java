@@ -0,0 +1,87 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies the hunks of a {@link FileDiff} on the content of the old version of a file, in memory, to rebuild the
+ * content of its new version.
+ * <p>
+ * As patch does, a hunk that does not apply at the line given by its header is searched around it, to support diffs
+ * made on a slightly different version. Line terminators of the result are always "\n".
+ */
+public class PatchApplier {
+
+    /**
+     * @param oldContent the content of the old version of the file
+     * @param fileDiff   the changes of the file
+     * @return the content of the new version of the file
+     * @throws IllegalArgumentException if a hunk does not match the old content
+     */
+    public String apply(String oldContent, FileDiff fileDiff) {
+        final List<String> oldLines = Arrays.asList(oldContent.split("\r?\n", -1));
+        final List<String> newLines = new ArrayList<>(oldLines.size());
+        // index, in the old lines, of the first line that has not been copied yet
+        int nextOldLine = 0;
+        int offset = 0;
+        for (Hunk hunk : fileDiff.getHunks()) {
+            final List<String> expectedOldLines = new ArrayList<>();
+            for (String line : hunk.getLines()) {
+                if (line.charAt(0) != '+') {
+                    expectedOldLines.add(line.substring(1));
+                }
+            }
+            // a hunk of length 0 starts after its line, e.g. "@@ -0,0 +1 @@" on a new file
+            final int expectedStart = (hunk.getOldLength() == 0 ? hunk.getOldStart() : hunk.getOldStart() - 1) + offset;
+            final int start = this.find(oldLines, expectedOldLines, expectedStart, nextOldLine);
+            if (start < 0) {
+                throw new IllegalArgumentException("The hunk at line " + hunk.getOldStart() + " does not apply on " + fileDiff.getOldPath());
+            }
+            offset = start - (expectedStart - offset);
+            newLines.addAll(oldLines.subList(nextOldLine, start));
+            for (String line : hunk.getLines()) {
+                if (line.charAt(0) != '-') {
+                    newLines.add(line.substring(1));
+                }
+            }
+            nextOldLine = start + expectedOldLines.size();
+        }
+        newLines.addAll(oldLines.subList(nextOldLine, oldLines.size()));
+        return String.join("\n", newLines);
+    }
+
+    /**
+     * @return the index of the old lines, closest to the expected one and not before the minimum, where the expected
+     * lines are, or -1 if there is none
+     */
+    private int find(List<String> oldLines, List<String> expectedLines, int expectedStart, int minimumStart) {
+        final int maximumStart = oldLines.size() - expectedLines.size();
+        for (int distance = 0; expectedStart - distance >= minimumStart || expectedStart + distance <= maximumStart; distance++) {
+            if (this.matches(oldLines, expectedLines, expectedStart + distance, minimumStart)) {
+                return expectedStart + distance;
+            }
+            if (distance > 0 && this.matches(oldLines, expectedLines, expectedStart - distance, minimumStart)) {
+                return expectedStart - distance;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(List<String> oldLines, List<String> expectedLines, int start, int minimumStart) {
+        if (start < minimumStart || start + expectedLines.size() > oldLines.size()) {
+            return false;
+        }
+        for (int i = 0; i < expectedLines.size(); i++) {
+            if (!withoutCarriageReturn(oldLines.get(start + i)).equals(withoutCarriageReturn(expectedLines.get(i)))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String withoutCarriageReturn(String line) {
+        return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+    }
+
+}
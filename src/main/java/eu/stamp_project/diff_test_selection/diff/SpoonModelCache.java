@@ -0,0 +1,207 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import gumtree.spoon.AstComparator;
+import gumtree.spoon.diff.Diff;
+import org.jetbrains.annotations.Nullable;
+import spoon.Launcher;
+import spoon.reflect.declaration.CtType;
+import spoon.reflect.factory.Factory;
+import spoon.support.SerializationModelStreamer;
+import spoon.support.compiler.VirtualFile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of the Spoon models of the compared sources, keyed by a hash of their name and content, so comparing
+ * several times the same version of a file, e.g. the same baseline against several patches, parses it only once.
+ * <p>
+ * Models are kept in memory with a LRU eviction. If a directory is given, each parsed model is also serialized in it,
+ * and looked up there before parsing, so the cache survives the invocation.
+ * <p>
+ * GumTree stores its trees in the metadata of the Spoon elements: a cached model is used by one comparison at a
+ * time, {@link #compare(String, String, String, String)} locks both models.
+ */
+public class SpoonModelCache {
+
+    private static final String JAVA_EXTENSION = ".java";
+
+    private static final String SERIALIZED_MODEL_EXTENSION = ".model";
+
+    private final Map<String, CtType<?>> modelPerKey;
+
+    @Nullable
+    private final File directory;
+
+    /**
+     * @param maximumSize maximum number of models kept in memory
+     * @param directory   directory where models are serialized, null to keep them in memory only
+     */
+    public SpoonModelCache(final int maximumSize, @Nullable File directory) {
+        this.modelPerKey = new LinkedHashMap<String, CtType<?>>(16, 0.75F, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CtType<?>> eldest) {
+                return this.size() > maximumSize;
+            }
+        };
+        this.directory = directory;
+    }
+
+    /**
+     * Compares two versions of a file, as {@link AstComparator#compare(java.io.File, java.io.File)} does, but with
+     * the cached models of both versions.
+     */
+    public Diff compare(File left, File right) throws IOException {
+        return this.compare(left.getName(), read(left), right.getName(), read(right));
+    }
+
+    /**
+     * Compares two versions of a file, given by their content.
+     *
+     * @param leftName  name of the file of the left version, e.g. Foo.java, used to find its main type
+     * @param left      content of the left version
+     * @param rightName name of the file of the right version
+     * @param right     content of the right version
+     */
+    public Diff compare(String leftName, String left, String rightName, String right) {
+        final String leftKey = key(leftName, left);
+        final String rightKey = key(rightName, right);
+        final CtType<?> leftType = this.getType(leftKey, leftName, left);
+        final CtType<?> rightType = this.getType(rightKey, rightName, right);
+        // locks are always taken in the same order
+        final Object firstLock = leftKey.compareTo(rightKey) <= 0 ? leftType : rightType;
+        final Object secondLock = firstLock == leftType ? rightType : leftType;
+        synchronized (firstLock) {
+            synchronized (secondLock) {
+                return new AstComparator().compare(leftType, rightType);
+            }
+        }
+    }
+
+    private CtType<?> getType(String key, String fileName, String content) {
+        synchronized (this.modelPerKey) {
+            final CtType<?> type = this.modelPerKey.get(key);
+            if (type != null) {
+                return type;
+            }
+        }
+        CtType<?> type = this.load(key, fileName);
+        if (type == null) {
+            type = parse(fileName, content);
+            this.save(key, type);
+        }
+        synchronized (this.modelPerKey) {
+            // another thread may have parsed the same content in the meantime, both models are equivalent
+            final CtType<?> concurrentType = this.modelPerKey.get(key);
+            if (concurrentType != null) {
+                return concurrentType;
+            }
+            this.modelPerKey.put(key, type);
+            return type;
+        }
+    }
+
+    private static CtType<?> parse(String fileName, String content) {
+        final Launcher launcher = new Launcher();
+        launcher.getEnvironment().setNoClasspath(true);
+        launcher.getEnvironment().setCommentEnabled(false);
+        launcher.getEnvironment().setLevel("OFF");
+        launcher.addInputResource(new VirtualFile(content, fileName));
+        launcher.buildModel();
+        final CtType<?> mainType = getMainType(launcher.getFactory(), fileName);
+        if (mainType == null) {
+            throw new IllegalArgumentException("No type could be built from " + fileName);
+        }
+        return mainType;
+    }
+
+    /**
+     * @return the type named as the file, or the first type if there is none, or null if the model is empty
+     */
+    @Nullable
+    private static CtType<?> getMainType(Factory factory, String fileName) {
+        final String simpleName = fileName.endsWith(JAVA_EXTENSION) ?
+                fileName.substring(0, fileName.length() - JAVA_EXTENSION.length()) : fileName;
+        CtType<?> mainType = null;
+        for (CtType<?> type : factory.Type().getAll()) {
+            if (type.getSimpleName().equals(simpleName)) {
+                return type;
+            }
+            if (mainType == null) {
+                mainType = type;
+            }
+        }
+        return mainType;
+    }
+
+    @Nullable
+    private CtType<?> load(String key, String fileName) {
+        if (this.directory == null) {
+            return null;
+        }
+        final File file = new File(this.directory, key + SERIALIZED_MODEL_EXTENSION);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream input = new BufferedInputStream(new FileInputStream(file))) {
+            return getMainType(new SerializationModelStreamer().load(input), fileName);
+        } catch (Exception e) {
+            // a corrupted or outdated model is parsed again, and overwritten
+            return null;
+        }
+    }
+
+    private void save(String key, CtType<?> type) {
+        if (this.directory == null) {
+            return;
+        }
+        if (!this.directory.exists() && !this.directory.mkdirs()) {
+            return;
+        }
+        final File file = new File(this.directory, key + SERIALIZED_MODEL_EXTENSION);
+        final File temporaryFile = new File(this.directory, key + SERIALIZED_MODEL_EXTENSION + ".tmp");
+        try (OutputStream output = new BufferedOutputStream(new FileOutputStream(temporaryFile))) {
+            new SerializationModelStreamer().save(type.getFactory(), output);
+        } catch (Exception e) {
+            // the cache on disk is optional
+            temporaryFile.delete();
+            return;
+        }
+        if (!temporaryFile.renameTo(file)) {
+            temporaryFile.delete();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String key(String fileName, String content) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(fileName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            final byte[] hash = digest.digest(content.getBytes(StandardCharsets.UTF_8));
+            final StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Streaming parser of unified diffs, as produced by git diff, git format-patch or diff -ru.
+ * <p>
+ * The diff is read once, and only the {@link FileDiff} being parsed is kept in memory: the parser can be iterated
+ * over diffs of any size. It understands the git extended headers (new and deleted files, renames, copies,
+ * modes, binary files), the headers of other diff tools, and hunks, whose body is read according to the counts of
+ * their header.
+ * <p>
+ * Paths are relative to the root of the diff: the "a/" and "b/" prefixes of git are removed, and only them.
+ */
+public class UnifiedDiffParser implements Iterator<FileDiff>, Closeable {
+
+    private static final String DEV_NULL = "/dev/null";
+
+    private static final String GIT_HEADER = "diff --git ";
+
+    private static final String OTHER_HEADER = "diff ";
+
+    private static final String OLD_FILE = "--- ";
+
+    private static final String NEW_FILE = "+++ ";
+
+    private static final String OLD_PREFIX = "a/";
+
+    private static final String NEW_PREFIX = "b/";
+
+    private final BufferedReader reader;
+
+    /**
+     * line read ahead, that starts the next file
+     */
+    private String pendingLine;
+
+    private FileDiff next;
+
+    /**
+     * true if the current file comes from git, with the "a/" and "b/" prefixes
+     */
+    private boolean gitPrefixes;
+
+    public UnifiedDiffParser(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (this.next == null) {
+            try {
+                this.next = this.parseNext();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return this.next != null;
+    }
+
+    @Override
+    public FileDiff next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final FileDiff fileDiff = this.next;
+        this.next = null;
+        return fileDiff;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.reader.close();
+    }
+
+    @Nullable
+    private FileDiff parseNext() throws IOException {
+        FileDiff current = null;
+        Hunk currentHunk = null;
+        // true as soon as the "---" line of the current file has been read
+        boolean hasOldFileLine = false;
+        String line;
+        while ((line = this.readLine()) != null) {
+            if (currentHunk != null && !currentHunk.isComplete()) {
+                currentHunk.addLine(line);
+                continue;
+            }
+            currentHunk = null;
+            if (line.startsWith(OTHER_HEADER)) {
+                if (current != null) {
+                    this.pendingLine = line;
+                    return current;
+                }
+                this.gitPrefixes = false;
+                current = line.startsWith(GIT_HEADER) ? this.parseGitHeader(line.substring(GIT_HEADER.length())) : new FileDiff(null, null);
+            } else if (line.startsWith(OLD_FILE)) {
+                if (current != null && (hasOldFileLine || !current.getHunks().isEmpty())) {
+                    // a diff without "diff" headers, the "---" line starts the next file
+                    this.pendingLine = line;
+                    return current;
+                }
+                if (current == null) {
+                    this.gitPrefixes = false;
+                    current = new FileDiff(null, null);
+                }
+                hasOldFileLine = true;
+                final String path = parsePath(line.substring(OLD_FILE.length()));
+                current.setOldPath(DEV_NULL.equals(path) ? null : path);
+                if (DEV_NULL.equals(path)) {
+                    current.setType(FileDiff.Type.ADDED);
+                }
+            } else if (line.startsWith(NEW_FILE) && current != null) {
+                final String path = parsePath(line.substring(NEW_FILE.length()));
+                current.setNewPath(DEV_NULL.equals(path) ? null : path);
+                if (DEV_NULL.equals(path)) {
+                    current.setType(FileDiff.Type.DELETED);
+                }
+                this.removeGitPrefixes(current);
+            } else if (line.startsWith("@@") && current != null) {
+                currentHunk = Hunk.parseHeader(line);
+                if (currentHunk != null) {
+                    current.getHunks().add(currentHunk);
+                }
+            } else if (current != null) {
+                this.parseExtendedHeader(line, current);
+            }
+        }
+        return current;
+    }
+
+    private String readLine() throws IOException {
+        if (this.pendingLine != null) {
+            final String line = this.pendingLine;
+            this.pendingLine = null;
+            return line;
+        }
+        return this.reader.readLine();
+    }
+
+    private void parseExtendedHeader(String line, FileDiff current) {
+        if (line.startsWith("new file mode")) {
+            current.setType(FileDiff.Type.ADDED);
+            current.setOldPath(null);
+        } else if (line.startsWith("deleted file mode")) {
+            current.setType(FileDiff.Type.DELETED);
+            current.setNewPath(null);
+        } else if (line.startsWith("rename from ")) {
+            current.setType(FileDiff.Type.RENAMED);
+            current.setOldPath(unquote(line.substring("rename from ".length())));
+        } else if (line.startsWith("rename to ")) {
+            current.setType(FileDiff.Type.RENAMED);
+            current.setNewPath(unquote(line.substring("rename to ".length())));
+        } else if (line.startsWith("copy from ")) {
+            current.setType(FileDiff.Type.COPIED);
+            current.setOldPath(unquote(line.substring("copy from ".length())));
+        } else if (line.startsWith("copy to ")) {
+            current.setType(FileDiff.Type.COPIED);
+            current.setNewPath(unquote(line.substring("copy to ".length())));
+        } else if (line.startsWith("Binary files ") || line.startsWith("GIT binary patch")) {
+            current.setBinary(true);
+        }
+        // index, mode, similarity lines, and any other text, are ignored
+    }
+
+    /**
+     * The paths of the "diff --git" line are only reliable when they are quoted or identical, they are replaced by
+     * the ones of the "---" and "+++" lines, or of the rename and copy lines, when there are some.
+     */
+    private FileDiff parseGitHeader(String paths) {
+        String oldPath;
+        String newPath;
+        if (paths.startsWith("\"")) {
+            final int endOfOldPath = endOfQuotedString(paths);
+            oldPath = unquote(paths.substring(0, endOfOldPath));
+            newPath = unquote(paths.substring(endOfOldPath).trim());
+        } else if ((paths.length() - 1) % 2 == 0 &&
+                paths.substring(OLD_PREFIX.length(), paths.length() / 2)
+                        .equals(paths.substring(paths.length() / 2 + 1 + NEW_PREFIX.length()))) {
+            oldPath = paths.substring(0, paths.length() / 2);
+            newPath = paths.substring(paths.length() / 2 + 1);
+        } else {
+            final int separator = paths.lastIndexOf(" " + NEW_PREFIX);
+            oldPath = separator < 0 ? paths : paths.substring(0, separator);
+            newPath = separator < 0 ? paths : paths.substring(separator + 1);
+        }
+        final FileDiff fileDiff = new FileDiff(oldPath, newPath);
+        this.gitPrefixes = oldPath.startsWith(OLD_PREFIX) && newPath.startsWith(NEW_PREFIX);
+        this.removeGitPrefixes(fileDiff);
+        return fileDiff;
+    }
+
+    /**
+     * removes the "a/" and "b/" prefixes, when the "diff --git" line has them, or when both paths have them.
+     * Diffs made with git diff --no-prefix keep their paths untouched.
+     */
+    private void removeGitPrefixes(FileDiff fileDiff) {
+        final String oldPath = fileDiff.getOldPath();
+        final String newPath = fileDiff.getNewPath();
+        final boolean oldPathHasPrefix = oldPath == null || oldPath.startsWith(OLD_PREFIX);
+        final boolean newPathHasPrefix = newPath == null || newPath.startsWith(NEW_PREFIX);
+        if (oldPath == null && newPath == null) {
+            return;
+        }
+        if (this.gitPrefixes || oldPathHasPrefix && newPathHasPrefix) {
+            if (oldPath != null && oldPath.startsWith(OLD_PREFIX)) {
+                fileDiff.setOldPath(oldPath.substring(OLD_PREFIX.length()));
+            }
+            if (newPath != null && newPath.startsWith(NEW_PREFIX)) {
+                fileDiff.setNewPath(newPath.substring(NEW_PREFIX.length()));
+            }
+        }
+    }
+
+    /**
+     * @param value the value of a "---" or "+++" line, that may be quoted and followed by a tab and a timestamp
+     * @return the path, with its prefix
+     */
+    private static String parsePath(String value) {
+        if (value.startsWith("\"")) {
+            return unquote(value.substring(0, endOfQuotedString(value)));
+        }
+        final int indexOfTab = value.indexOf('\t');
+        return indexOfTab < 0 ? value.trim() : value.substring(0, indexOfTab);
+    }
+
+    private static int endOfQuotedString(String value) {
+        int index = 1;
+        while (index < value.length() && value.charAt(index) != '"') {
+            index += value.charAt(index) == '\\' ? 2 : 1;
+        }
+        return Math.min(index + 1, value.length());
+    }
+
+    /**
+     * removes the quotes and the C-style escapes that git uses for paths with special characters.
+     * Octal escapes are bytes of the UTF-8 encoding of the path.
+     */
+    private static String unquote(String value) {
+        if (!value.startsWith("\"") || !value.endsWith("\"") || value.length() < 2) {
+            return value;
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final String content = value.substring(1, value.length() - 1);
+        int index = 0;
+        while (index < content.length()) {
+            final char current = content.charAt(index);
+            if (current != '\\' || index + 1 >= content.length()) {
+                final byte[] encoded = String.valueOf(current).getBytes(StandardCharsets.UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+                index++;
+                continue;
+            }
+            final char escaped = content.charAt(index + 1);
+            if (escaped >= '0' && escaped <= '7') {
+                int end = index + 1;
+                while (end < content.length() && end < index + 4 && content.charAt(end) >= '0' && content.charAt(end) <= '7') {
+                    end++;
+                }
+                bytes.write(Integer.parseInt(content.substring(index + 1, end), 8));
+                index = end;
+                continue;
+            }
+            switch (escaped) {
+                case 'n':
+                    bytes.write('\n');
+                    break;
+                case 't':
+                    bytes.write('\t');
+                    break;
+                default:
+                    bytes.write(escaped);
+            }
+            index += 2;
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
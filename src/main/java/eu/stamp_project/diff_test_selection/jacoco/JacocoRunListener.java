@@ -0,0 +1,28 @@
+package eu.stamp_project.diff_test_selection.jacoco;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Records the coverage of each test method run by JUnit 4. Surefire does not find it on its own, it must be given
+ * to its JUnit 4 provider with the "listener" property of its configuration.
+ */
+public class JacocoRunListener extends RunListener {
+
+    @Override
+    public void testStarted(Description description) {
+        final PerTestCoverageRecorder recorder = PerTestCoverageRecorder.getInstance();
+        if (recorder != null && description.getMethodName() != null) {
+            recorder.testStarted(description.getClassName(), description.getMethodName());
+        }
+    }
+
+    @Override
+    public void testFinished(Description description) {
+        final PerTestCoverageRecorder recorder = PerTestCoverageRecorder.getInstance();
+        if (recorder != null && description.getMethodName() != null) {
+            recorder.testFinished();
+        }
+    }
+
+}
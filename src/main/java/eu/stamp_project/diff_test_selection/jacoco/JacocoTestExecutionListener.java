@@ -0,0 +1,40 @@
+package eu.stamp_project.diff_test_selection.jacoco;
+
+import org.junit.platform.engine.TestExecutionResult;
+import org.junit.platform.engine.TestSource;
+import org.junit.platform.engine.support.descriptor.MethodSource;
+import org.junit.platform.launcher.TestExecutionListener;
+import org.junit.platform.launcher.TestIdentifier;
+
+/**
+ * Records the coverage of each test method run on the JUnit Platform, i.e. JUnit 5 tests, and JUnit 4 tests run by
+ * the vintage engine. It is registered as a service, and so found as soon as it is on the classpath of the tests.
+ */
+public class JacocoTestExecutionListener implements TestExecutionListener {
+
+    @Override
+    public void executionStarted(TestIdentifier testIdentifier) {
+        final PerTestCoverageRecorder recorder = PerTestCoverageRecorder.getInstance();
+        final MethodSource source = getMethodSource(testIdentifier);
+        if (recorder != null && source != null) {
+            recorder.testStarted(source.getClassName(), source.getMethodName());
+        }
+    }
+
+    @Override
+    public void executionFinished(TestIdentifier testIdentifier, TestExecutionResult testExecutionResult) {
+        final PerTestCoverageRecorder recorder = PerTestCoverageRecorder.getInstance();
+        if (recorder != null && getMethodSource(testIdentifier) != null) {
+            recorder.testFinished();
+        }
+    }
+
+    private static MethodSource getMethodSource(TestIdentifier testIdentifier) {
+        if (!testIdentifier.isTest()) {
+            return null;
+        }
+        final TestSource source = testIdentifier.getSource().orElse(null);
+        return source instanceof MethodSource ? (MethodSource) source : null;
+    }
+
+}
@@ -0,0 +1,92 @@
+package eu.stamp_project.diff_test_selection.jacoco;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+
+/**
+ * Dumps the execution data of the JaCoCo agent once per test method, in its own file of the output directory.
+ * The execution data is reset when a test method starts, and its session is named after the test method:
+ * its full qualified class name and its name, separated by #. The start and dump timestamps of the session give
+ * the duration of the test method.
+ * <p>
+ * This class runs in the JVMs of the tests, next to the agent, whose runtime is reached by reflection: it must only
+ * depend on the JDK. The test methods of a JVM are expected to run one after the other.
+ */
+public class PerTestCoverageRecorder {
+
+    /**
+     * system property that gives the directory where the execution data of each test method is written
+     */
+    public static final String OUTPUT_DIRECTORY_PROPERTY = "diffTestSelection.jacoco.outputDirectory";
+
+    public static final String EXECUTION_DATA_EXTENSION = ".exec";
+
+    private static final String AGENT_RUNTIME = "org.jacoco.agent.rt.RT";
+
+    private static PerTestCoverageRecorder instance;
+
+    private static boolean initialized;
+
+    private final File outputDirectory;
+
+    private final Object agent;
+
+    private final Method setSessionId;
+
+    private final Method reset;
+
+    private final Method getExecutionData;
+
+    private PerTestCoverageRecorder(File outputDirectory, Object agent) throws NoSuchMethodException {
+        this.outputDirectory = outputDirectory;
+        this.agent = agent;
+        final Class<?> agentInterface = Class.forName(AGENT_RUNTIME).getMethod("getAgent").getReturnType();
+        this.setSessionId = agentInterface.getMethod("setSessionId", String.class);
+        this.reset = agentInterface.getMethod("reset");
+        this.getExecutionData = agentInterface.getMethod("getExecutionData", boolean.class);
+    }
+
+    /**
+     * @return the recorder of this JVM, or null if the coverage is not recorded, i.e. the output directory is not
+     * given, or the JaCoCo agent is not running
+     */
+    public static synchronized PerTestCoverageRecorder getInstance() {
+        if (!initialized) {
+            initialized = true;
+            final String outputDirectory = System.getProperty(OUTPUT_DIRECTORY_PROPERTY);
+            if (outputDirectory != null) {
+                try {
+                    final Object agent = Class.forName(AGENT_RUNTIME).getMethod("getAgent").invoke(null);
+                    instance = new PerTestCoverageRecorder(new File(outputDirectory), agent);
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    System.err.println("The JaCoCo agent is not running, the coverage of the tests is not recorded: " + e);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public synchronized void testStarted(String testClassName, String testMethodName) {
+        try {
+            this.setSessionId.invoke(this.agent, testClassName + "#" + testMethodName);
+            this.reset.invoke(this.agent);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public synchronized void testFinished() {
+        try {
+            final byte[] executionData = (byte[]) this.getExecutionData.invoke(this.agent, true);
+            if (!this.outputDirectory.exists() && !this.outputDirectory.mkdirs() && !this.outputDirectory.isDirectory()) {
+                throw new IOException("Could not create " + this.outputDirectory.getAbsolutePath());
+            }
+            Files.write(File.createTempFile("test", EXECUTION_DATA_EXTENSION, this.outputDirectory).toPath(), executionData);
+        } catch (ReflectiveOperationException | IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package eu.stamp_project.diff_test_selection.report;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the selected tests in a compact binary format, streamed to a buffered output.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * int magic, int version
+ * int numberOfTestClasses
+ * for each test class: String name, int numberOfTestMethods,
+ *   for each test method: String name, double duration in seconds, negative if unknown
+ * </pre>
+ * Strings are stored as their length followed by their UTF-8 bytes.
+ */
+public class BinaryReport implements Report {
+
+    static final int MAGIC = 0x44545352;
+
+    static final int VERSION = 1;
+
+    @Override
+    public void report(final Log log, final String outputPath, final Map<String, Set<String>> testThatExecuteChanges) {
+        this.report(log, outputPath, testThatExecuteChanges, Collections.emptyMap());
+    }
+
+    @Override
+    public void report(final Log log,
+                       final String outputPath,
+                       final Map<String, Set<String>> testThatExecuteChanges,
+                       final Map<String, Double> durationPerTest) {
+        int numberOfTestMethods = 0;
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outputPath)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(testThatExecuteChanges.size());
+            for (Map.Entry<String, Set<String>> entry : testThatExecuteChanges.entrySet()) {
+                writeString(entry.getKey(), output);
+                output.writeInt(entry.getValue().size());
+                for (String testMethodName : entry.getValue()) {
+                    writeString(testMethodName, output);
+                    output.writeDouble(durationPerTest.getOrDefault(entry.getKey() + "#" + testMethodName, CoverageIndex.UNKNOWN_DURATION));
+                }
+                numberOfTestMethods += entry.getValue().size();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.info(numberOfTestMethods + " test methods of " + testThatExecuteChanges.size() + " test classes written in " + outputPath);
+    }
+
+    private static void writeString(String value, DataOutputStream output) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+}
@@ -2,15 +2,23 @@ package eu.stamp_project.diff_test_selection.report;
 
 import org.apache.maven.plugin.logging.Log;
 
-import java.io.File;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
+ * Writes one line per test class: its full qualified name, and the names of its selected test methods.
+ * The durations of the tests, if given, are written next to it, in a file suffixed by "_durations", one line per test
+ * method: the full qualified name of its class, its name, and its duration in seconds.
+ * <p>
+ * Lines are streamed to a buffered writer, the content of the report is only logged at the debug level.
+ *
  * Created by Benjamin DANGLOT
  * benjamin.danglot@inria.fr
  * on 26/07/18
@@ -21,27 +29,49 @@ public class CSVReport implements Report {
 
     private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 
+    private static final String DURATIONS_SUFFIX = "_durations";
+
+    private static final String CSV_EXTENSION = ".csv";
+
     @Override
     public void report(final Log log, final String outputPath, final Map<String, Set<String>> testThatExecuteChanges) {
-        final File file = new File(outputPath);
-        StringBuilder builder = new StringBuilder();
-        String report = testThatExecuteChanges.keySet()
-                .stream()
-                .map(testClassName ->
-                        testClassName + SEMI_COLON +
-                                testThatExecuteChanges.get(testClassName)
-                                        .stream()
-                                        .collect(Collectors.joining(SEMI_COLON))
-                ).collect(Collectors.joining(LINE_SEPARATOR));
-        builder.append(builder);
-        log.info(report);
-        try {
-            FileWriter writer = new FileWriter(file);
-            writer.write(report);
-            writer.close();
+        this.report(log, outputPath, testThatExecuteChanges, Collections.emptyMap());
+    }
+
+    @Override
+    public void report(final Log log,
+                       final String outputPath,
+                       final Map<String, Set<String>> testThatExecuteChanges,
+                       final Map<String, Double> durationPerTest) {
+        final String durationsOutputPath = outputPath.endsWith(CSV_EXTENSION) ?
+                outputPath.substring(0, outputPath.length() - CSV_EXTENSION.length()) + DURATIONS_SUFFIX + CSV_EXTENSION :
+                outputPath + DURATIONS_SUFFIX;
+        int numberOfTestMethods = 0;
+        try (Writer writer = newWriter(outputPath);
+             Writer durationsWriter = durationPerTest.isEmpty() ? null : newWriter(durationsOutputPath)) {
+            for (Map.Entry<String, Set<String>> entry : testThatExecuteChanges.entrySet()) {
+                final StringBuilder line = new StringBuilder(entry.getKey());
+                for (String testMethodName : entry.getValue()) {
+                    line.append(SEMI_COLON).append(testMethodName);
+                    final Double duration = durationPerTest.get(entry.getKey() + "#" + testMethodName);
+                    if (durationsWriter != null && duration != null) {
+                        durationsWriter.write(entry.getKey() + SEMI_COLON + testMethodName + SEMI_COLON + duration + LINE_SEPARATOR);
+                    }
+                }
+                numberOfTestMethods += entry.getValue().size();
+                if (log.isDebugEnabled()) {
+                    log.debug(line);
+                }
+                writer.write(line.append(LINE_SEPARATOR).toString());
+            }
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
+        log.info(numberOfTestMethods + " test methods of " + testThatExecuteChanges.size() + " test classes written in " + outputPath);
+    }
+
+    private static Writer newWriter(String path) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), StandardCharsets.UTF_8));
     }
 
 }
@@ -0,0 +1,104 @@
+package eu.stamp_project.diff_test_selection.report;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the selected tests as a JSON document, streamed to a buffered writer:
+ * <pre>
+ * {"testClasses":[{"name":"org.example.FooTest","methods":[{"name":"test","duration":0.1}]}]}
+ * </pre>
+ * The duration of a test method, in seconds, is only written when it is known.
+ */
+public class JSONReport implements Report {
+
+    @Override
+    public void report(final Log log, final String outputPath, final Map<String, Set<String>> testThatExecuteChanges) {
+        this.report(log, outputPath, testThatExecuteChanges, Collections.emptyMap());
+    }
+
+    @Override
+    public void report(final Log log,
+                       final String outputPath,
+                       final Map<String, Set<String>> testThatExecuteChanges,
+                       final Map<String, Double> durationPerTest) {
+        int numberOfTestMethods = 0;
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath), StandardCharsets.UTF_8))) {
+            writer.write("{\"testClasses\":[");
+            boolean firstTestClass = true;
+            for (Map.Entry<String, Set<String>> entry : testThatExecuteChanges.entrySet()) {
+                if (!firstTestClass) {
+                    writer.write(',');
+                }
+                firstTestClass = false;
+                writer.write("{\"name\":");
+                writer.write(quote(entry.getKey()));
+                writer.write(",\"methods\":[");
+                boolean firstTestMethod = true;
+                for (String testMethodName : entry.getValue()) {
+                    if (!firstTestMethod) {
+                        writer.write(',');
+                    }
+                    firstTestMethod = false;
+                    writer.write("{\"name\":");
+                    writer.write(quote(testMethodName));
+                    final Double duration = durationPerTest.get(entry.getKey() + "#" + testMethodName);
+                    if (duration != null) {
+                        writer.write(",\"duration\":" + duration);
+                    }
+                    writer.write('}');
+                }
+                writer.write("]}");
+                numberOfTestMethods += entry.getValue().size();
+            }
+            writer.write("]}");
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        log.info(numberOfTestMethods + " test methods of " + testThatExecuteChanges.size() + " test classes written in " + outputPath);
+    }
+
+    /**
+     * @return the given value as a JSON string, i.e. quoted and escaped
+     */
+    public static String quote(String value) {
+        final StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char current = value.charAt(i);
+            switch (current) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (current < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) current));
+                    } else {
+                        quoted.append(current);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+}
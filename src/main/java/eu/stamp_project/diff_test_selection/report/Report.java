@@ -26,4 +26,18 @@ public interface Report {
             final Map<String, Set<String>> testThatExecuteChanges
     );
 
+    /**
+     * same as {@link #report(Log, String, Map)}, with the durations of the selected tests, that reports may output
+     * @param durationPerTest the known durations of the selected tests, in seconds, keyed by the full qualified name of
+     *                        their class and their name, separated by #
+     */
+    default void report(
+            final Log logger,
+            final String outputPath,
+            final Map<String, Set<String>> testThatExecuteChanges,
+            final Map<String, Double> durationPerTest
+    ) {
+        this.report(logger, outputPath, testThatExecuteChanges);
+    }
+
 }
@@ -0,0 +1,109 @@
+package eu.stamp_project.diff_test_selection;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import eu.stamp_project.diff_test_selection.coverage.InMemoryCoverageIndex;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestPrioritizerTest {
+
+    private static final String TEST_CLASS_NAME = "org.example.FooTest";
+
+    /**
+     * @param durations the duration of each test recorded with the coverage, {@link CoverageIndex#UNKNOWN_DURATION} if
+     *                  it is unknown
+     */
+    private static InMemoryCoverageIndex newCoverage(double... durations) {
+        final InMemoryCoverageIndex coverage = new InMemoryCoverageIndex();
+        for (int i = 0; i < durations.length; i++) {
+            coverage.setTestDuration(coverage.getTestId(TEST_CLASS_NAME, "test" + i), durations[i]);
+        }
+        return coverage;
+    }
+
+    private static TestPrioritizer newPrioritizer(CoverageIndex coverage, TestHistory history) {
+        return new TestPrioritizer(coverage, history, Collections::emptyMap);
+    }
+
+    @Test
+    public void testRankingBySignalPerSecond() {
+        final TestPrioritizer prioritizer = newPrioritizer(newCoverage(1.0D, 2.0D, 0.5D, 0.1D), new TestHistory());
+        // test3 executes no change, test1 and test2 have the same priority and keep the order of their ids
+        assertArrayEquals(new int[]{1, 2, 0}, prioritizer.prioritize(new int[]{1, 4, 1, 0}, 0.0D));
+        assertArrayEquals(new int[]{1, 2, 0}, prioritizer.prioritize(new int[]{1, 4, 1, 0}, 0.0D));
+    }
+
+    @Test
+    public void testFailureRate() {
+        final TestHistory history = new TestHistory();
+        final Map<String, SurefireReports.TestCaseResult> resultPerTest = new HashMap<>();
+        resultPerTest.put(TEST_CLASS_NAME + "#test0", new SurefireReports.TestCaseResult(1.0D, true));
+        history.record(resultPerTest);
+        resultPerTest.put(TEST_CLASS_NAME + "#test0", new SurefireReports.TestCaseResult(1.0D, false));
+        history.record(resultPerTest);
+        // test0 failed once in two runs: 1 * (1 + 10 * 0.5) / 1 = 6, more than the 4 / 1 of test1
+        final TestPrioritizer prioritizer = newPrioritizer(newCoverage(1.0D, 1.0D), history);
+        assertArrayEquals(new int[]{0, 1}, prioritizer.prioritize(new int[]{1, 4}, 0.0D));
+    }
+
+    @Test
+    public void testTimeBudget() {
+        // priorities: test0 1, test1 2, test2 0.5, test3 2, test4 1
+        final TestPrioritizer prioritizer = newPrioritizer(newCoverage(3.0D, 1.0D, 2.0D, 0.5D, 1.0D), new TestHistory());
+        final int[] numberOfChangesPerTest = {3, 2, 1, 1, 1};
+        // test0 does not fit in the remaining second, but test4, of the same priority, does
+        assertArrayEquals(new int[]{1, 3, 4}, prioritizer.prioritize(numberOfChangesPerTest, 2.5D));
+        assertArrayEquals(new int[]{1, 3}, prioritizer.prioritize(numberOfChangesPerTest, 1.5D));
+        assertArrayEquals(new int[]{}, prioritizer.prioritize(numberOfChangesPerTest, 0.1D));
+        assertArrayEquals(new int[]{1, 3, 0, 4, 2}, prioritizer.prioritize(numberOfChangesPerTest, 100.0D));
+        assertArrayEquals(new int[]{1, 3, 0, 4, 2}, prioritizer.prioritize(numberOfChangesPerTest, 0.0D));
+    }
+
+    @Test
+    public void testUnknownDurations() {
+        final InMemoryCoverageIndex coverage = newCoverage(1.0D, CoverageIndex.UNKNOWN_DURATION, 4.0D, CoverageIndex.UNKNOWN_DURATION);
+        final AtomicInteger numberOfCalls = new AtomicInteger();
+        final TestPrioritizer prioritizer = new TestPrioritizer(coverage, new TestHistory(), () -> {
+            numberOfCalls.incrementAndGet();
+            return Collections.singletonMap(TEST_CLASS_NAME + "#test3", 0.5D);
+        });
+        assertEquals(CoverageIndex.UNKNOWN_DURATION, prioritizer.getDuration(1), 0.0D);
+        assertEquals(0.5D, prioritizer.getDuration(3), 0.0D);
+        // the durations of the surefire reports are only read once
+        assertEquals(1, numberOfCalls.get());
+        // test1 gets the average of the known durations, (1 + 4 + 0.5) / 3 = 1.83, and does not fit after test3
+        assertArrayEquals(new int[]{3, 0}, prioritizer.prioritize(new int[]{1, 1, 1, 1}, 2.0D));
+        assertArrayEquals(new int[]{3, 0, 1, 2}, prioritizer.prioritize(new int[]{1, 1, 1, 1}, 0.0D));
+    }
+
+    @Test
+    public void testNoKnownDuration() {
+        final AtomicInteger numberOfCalls = new AtomicInteger();
+        final TestPrioritizer prioritizer = new TestPrioritizer(
+                newCoverage(CoverageIndex.UNKNOWN_DURATION, CoverageIndex.UNKNOWN_DURATION),
+                new TestHistory(),
+                () -> {
+                    numberOfCalls.incrementAndGet();
+                    return Collections.emptyMap();
+                }
+        );
+        // every test gets the default duration of one second
+        assertArrayEquals(new int[]{1}, prioritizer.prioritize(new int[]{1, 2}, 1.5D));
+        assertEquals(1, numberOfCalls.get());
+    }
+
+    @Test
+    public void testKnownDurationsDoNotReadTheReports() {
+        final TestPrioritizer prioritizer = new TestPrioritizer(newCoverage(1.0D, 2.0D), new TestHistory(), () -> {
+            throw new AssertionError("the durations of the surefire reports should not be read");
+        });
+        assertArrayEquals(new int[]{1, 0}, prioritizer.prioritize(new int[]{1, 4}, 0.0D));
+    }
+}
@@ -0,0 +1,146 @@
+package eu.stamp_project.diff_test_selection.coverage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CoverageIndexFileTest {
+
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = File.createTempFile("coverage-index", "");
+        if (!this.directory.delete() || !this.directory.mkdir()) {
+            throw new IOException("Could not create " + this.directory.getAbsolutePath());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    private static InMemoryCoverageIndex newCoverage() {
+        final InMemoryCoverageIndex coverage = new InMemoryCoverageIndex();
+        final int test1 = coverage.getTestId("org.example.FooTest", "test1");
+        final int test2 = coverage.getTestId("org.example.FooTest", "test2");
+        final int test3 = coverage.getTestId("org.example.BarTest", "test3");
+        coverage.setTestDuration(test1, 0.5D);
+        coverage.setTestDuration(test3, 12.25D);
+        coverage.addCoverage(test1, "org.example.Foo", 10);
+        coverage.addCoverage(test2, "org.example.Foo", 10);
+        coverage.addCoverage(test2, "org.example.Foo", 11);
+        coverage.addCoverage(test3, "org.example.Bar", 3);
+        coverage.addMethodCoverage(test1, "org.example.Foo", 9, 12);
+        coverage.addMethodCoverage(test2, "org.example.Foo", 9, 12);
+        coverage.addMethodCoverage(test2, "org.example.Foo", 20, 25);
+        coverage.addMethodCoverage(test3, "org.example.Bar", 2, 4);
+        return coverage;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final InMemoryCoverageIndex coverage = newCoverage();
+        final File file = CoverageIndexFile.getIndexFile(this.directory, COMMIT);
+        CoverageIndexFile.write(coverage, COMMIT, file);
+        final MappedCoverageIndex mappedCoverage = MappedCoverageIndex.open(file);
+
+        assertEquals(COMMIT, mappedCoverage.getCommit());
+        assertEquals(3, mappedCoverage.getNumberOfTests());
+        for (int testId = 0; testId < coverage.getNumberOfTests(); testId++) {
+            assertEquals(coverage.getTestClassName(testId), mappedCoverage.getTestClassName(testId));
+            assertEquals(coverage.getTestMethodName(testId), mappedCoverage.getTestMethodName(testId));
+            assertEquals(coverage.getTestDuration(testId), mappedCoverage.getTestDuration(testId), 0.0D);
+        }
+        assertEquals(CoverageIndex.UNKNOWN_DURATION, mappedCoverage.getTestDuration(1), 0.0D);
+        assertEquals(new HashSet<>(coverage.getCoveredClassNames()), new HashSet<>(mappedCoverage.getCoveredClassNames()));
+        for (String className : coverage.getCoveredClassNames()) {
+            assertEquals(coverage.getNumberOfLines(className), mappedCoverage.getNumberOfLines(className));
+            for (int line = 0; line < coverage.getNumberOfLines(className); line++) {
+                assertArrayEquals(coverage.getTestsThatExecute(className, line), mappedCoverage.getTestsThatExecute(className, line));
+            }
+            final int[] methods = coverage.getExecutedMethods(className);
+            assertArrayEquals(methods, mappedCoverage.getExecutedMethods(className));
+            for (int i = 0; i < methods.length; i += 2) {
+                assertArrayEquals(coverage.getTestsThatExecuteMethod(className, methods[i]),
+                        mappedCoverage.getTestsThatExecuteMethod(className, methods[i]));
+            }
+        }
+
+        assertArrayEquals(new int[]{0, 1}, mappedCoverage.getTestsThatExecute("org.example.Foo", 10));
+        assertArrayEquals(new int[]{1}, mappedCoverage.getTestsThatExecute("org.example.Foo", 11));
+        assertArrayEquals(new int[]{9, 12, 20, 25}, mappedCoverage.getExecutedMethods("org.example.Foo"));
+        assertArrayEquals(new int[]{0, 1}, mappedCoverage.getTestsThatExecuteMethod("org.example.Foo", 9));
+        assertArrayEquals(new int[]{2}, mappedCoverage.getTestsThatExecuteMethod("org.example.Bar", 2));
+    }
+
+    @Test
+    public void testLoad() {
+        final File file = CoverageIndexFile.getIndexFile(this.directory, COMMIT);
+        CoverageIndexFile.write(newCoverage(), COMMIT, file);
+        final MappedCoverageIndex loadedCoverage = MappedCoverageIndex.load(file);
+        // the loaded index does not depend on the file anymore
+        assertTrue(file.delete());
+
+        assertEquals(COMMIT, loadedCoverage.getCommit());
+        assertEquals(3, loadedCoverage.getNumberOfTests());
+        assertArrayEquals(new int[]{0, 1}, loadedCoverage.getTestsThatExecute("org.example.Foo", 10));
+        assertArrayEquals(new int[]{9, 12, 20, 25}, loadedCoverage.getExecutedMethods("org.example.Foo"));
+        assertArrayEquals(new int[]{2}, loadedCoverage.getTestsThatExecuteMethod("org.example.Bar", 2));
+    }
+
+    @Test
+    public void testMissingCoverage() {
+        final File file = CoverageIndexFile.getIndexFile(this.directory, COMMIT);
+        CoverageIndexFile.write(newCoverage(), COMMIT, file);
+        final MappedCoverageIndex mappedCoverage = MappedCoverageIndex.open(file);
+
+        assertEquals(0, mappedCoverage.getTestsThatExecute("org.example.Foo", 1000).length);
+        assertEquals(0, mappedCoverage.getTestsThatExecute("org.example.Foo", -1).length);
+        assertEquals(0, mappedCoverage.getTestsThatExecute("org.example.Unknown", 10).length);
+        assertEquals(0, mappedCoverage.getExecutedMethods("org.example.Unknown").length);
+        assertEquals(0, mappedCoverage.getTestsThatExecuteMethod("org.example.Foo", 10).length);
+        assertEquals(0, mappedCoverage.getNumberOfLines("org.example.Unknown"));
+    }
+
+    @Test
+    public void testEmptyCoverage() {
+        final File file = CoverageIndexFile.getIndexFile(this.directory, COMMIT);
+        CoverageIndexFile.write(new InMemoryCoverageIndex(), COMMIT, file);
+        final MappedCoverageIndex mappedCoverage = MappedCoverageIndex.open(file);
+
+        assertEquals(COMMIT, mappedCoverage.getCommit());
+        assertEquals(0, mappedCoverage.getNumberOfTests());
+        assertEquals(0, mappedCoverage.getCoveredClassNames().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOtherVersion() throws IOException {
+        final File file = CoverageIndexFile.getIndexFile(this.directory, COMMIT);
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+            output.writeInt(CoverageIndexFile.MAGIC);
+            output.writeInt(CoverageIndexFile.VERSION - 1);
+            output.writeLong(8L);
+        }
+        MappedCoverageIndex.open(file);
+    }
+}
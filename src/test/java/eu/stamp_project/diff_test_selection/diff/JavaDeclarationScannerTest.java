@@ -0,0 +1,102 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class JavaDeclarationScannerTest {
+
+    static final String FOO = String.join("\n",
+            "package org.example;",
+            "",
+            "import java.util.List;",
+            "",
+            "/**",
+            " * A { in a comment",
+            " */",
+            "@Deprecated",
+            "public class Foo {",
+            "",
+            "    // a } in a comment",
+            "    private String s = \"}{\\\"}\";",
+            "    private char c = '{';",
+            "",
+            "    class Inner {",
+            "        Class<?> type = Foo.class;",
+            "    }",
+            "}",
+            "",
+            "interface Bar {",
+            "}",
+            ""
+    );
+
+    @Test
+    public void testDeclarations() {
+        final JavaDeclarationScanner scanner = new JavaDeclarationScanner(FOO);
+        assertTrue(scanner.isWellFormed());
+        assertEquals("org.example", scanner.getPackageName());
+        final List<JavaDeclarationScanner.TypeDeclaration> topLevelTypes = scanner.getTopLevelTypes();
+        // the nested type is not a top-level type
+        assertEquals(2, topLevelTypes.size());
+        assertEquals("Foo", topLevelTypes.get(0).getSimpleName());
+        // from its annotation to its closing brace
+        assertEquals(8, topLevelTypes.get(0).getStartLine());
+        assertEquals(18, topLevelTypes.get(0).getEndLine());
+        assertEquals("Bar", topLevelTypes.get(1).getSimpleName());
+        assertEquals(20, topLevelTypes.get(1).getStartLine());
+        assertEquals(21, topLevelTypes.get(1).getEndLine());
+    }
+
+    @Test
+    public void testCommentsAndBlankLines() {
+        final JavaDeclarationScanner scanner = new JavaDeclarationScanner(FOO);
+        for (int line : new int[]{2, 4, 5, 6, 7, 10, 11, 14, 19}) {
+            assertFalse("line " + line, scanner.isCodeLine(line));
+        }
+        for (int line : new int[]{1, 3, 8, 9, 12, 13, 15, 16, 17, 18, 20, 21}) {
+            assertTrue("line " + line, scanner.isCodeLine(line));
+        }
+    }
+
+    @Test
+    public void testBracesInLiterals() {
+        final JavaDeclarationScanner scanner = new JavaDeclarationScanner(String.join("\n",
+                "class Foo {",
+                "    String s = \"}\";",
+                "    String t = \"\\\"}\";",
+                "    char c = '}';",
+                "    char d = '\\'';",
+                "}"
+        ));
+        assertTrue(scanner.isWellFormed());
+        assertEquals(1, scanner.getTopLevelTypes().size());
+        assertEquals(6, scanner.getTopLevelTypes().get(0).getEndLine());
+    }
+
+    @Test
+    public void testLinesOutsideOfTopLevelTypes() {
+        final JavaDeclarationScanner scanner = new JavaDeclarationScanner(FOO);
+        assertNull(scanner.getTopLevelTypeAt(1));
+        assertNull(scanner.getTopLevelTypeAt(3));
+        assertNull(scanner.getTopLevelTypeAt(19));
+        assertNull(scanner.getTopLevelTypeAt(100));
+        assertEquals("Foo", scanner.getTopLevelTypeAt(12).getSimpleName());
+        assertEquals("Foo", scanner.getTopLevelTypeAt(16).getSimpleName());
+        assertEquals("Bar", scanner.getTopLevelTypeAt(21).getSimpleName());
+    }
+
+    @Test
+    public void testMalformedSources() {
+        assertFalse(new JavaDeclarationScanner("class Foo {\n    void foo() {\n}\n").isWellFormed());
+        assertFalse(new JavaDeclarationScanner("class Foo {\n}\n}\n").isWellFormed());
+        assertFalse(new JavaDeclarationScanner("class Foo {\n    void foo( {\n    }\n}\n").isWellFormed());
+        assertFalse(new JavaDeclarationScanner("class Foo {\n    String s = \"}\n").isWellFormed());
+        assertTrue(new JavaDeclarationScanner("").isWellFormed());
+    }
+}
@@ -0,0 +1,145 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LineChangeDetectorTest {
+
+    private File directory;
+
+    private File foo;
+
+    @Before
+    public void setUp() throws IOException {
+        this.directory = File.createTempFile("line-change-detector", "");
+        if (!this.directory.delete() || !this.directory.mkdir()) {
+            throw new IOException("Could not create " + this.directory.getAbsolutePath());
+        }
+        this.foo = new File(this.directory, "Foo.java");
+        Files.write(this.foo.toPath(), JavaDeclarationScannerTest.FOO.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() {
+        final File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    private static FileDiff parse(String... lines) throws IOException {
+        return UnifiedDiffParserTest.parse(lines).get(0);
+    }
+
+    @Test
+    public void testCodeLines() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -12,2 +12,2 @@",
+                "-    private String s = \"}{\\\"}\";",
+                "-    private char c = '{';",
+                "+    private String s = \"\";",
+                "+    private char c = ' ';"
+        );
+        final Map<String, List<Integer>> modifiedLines = new LineChangeDetector().getModifiedLinesPerQualifiedName(this.foo, fileDiff, false);
+        assertEquals(Collections.singletonMap("org.example.Foo", Arrays.asList(12, 13)), modifiedLines);
+    }
+
+    @Test
+    public void testCommentsAndBlankLines() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -10,3 +10,2 @@",
+                "-",
+                "-    // a } in a comment",
+                "+    // another comment",
+                "     private String s = \"}{\\\"}\";",
+                "@@ -14,2 +13,2 @@",
+                "-",
+                "+    ",
+                "     class Inner {"
+        );
+        final Map<String, List<Integer>> modifiedLines = new LineChangeDetector().getModifiedLinesPerQualifiedName(this.foo, fileDiff, false);
+        // only comments and blank lines changed, no class is modified, and the mapping is not ambiguous
+        assertTrue(modifiedLines.isEmpty());
+    }
+
+    @Test
+    public void testPureInsertion() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -12,2 +12,3 @@",
+                "     private String s = \"}{\\\"}\";",
+                "+    private int i;",
+                "     private char c = '{';"
+        );
+        // the lines around the insertion may not be the executed ones
+        assertNull(new LineChangeDetector().getModifiedLinesPerQualifiedName(this.foo, fileDiff, false));
+        assertEquals(Collections.singletonMap("org.example.Foo", Arrays.asList(12, 13)),
+                new LineChangeDetector().getModifiedLinesPerQualifiedName(this.foo, fileDiff, true));
+    }
+
+    @Test
+    public void testLinesOutsideOfTopLevelTypes() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -3 +3 @@",
+                "-import java.util.List;",
+                "+import java.util.Set;",
+                "@@ -16 +16 @@",
+                "-        Class<?> type = Foo.class;",
+                "+        Class<?> type = Bar.class;"
+        );
+        assertNull(new LineChangeDetector().getModifiedLinesPerQualifiedName(this.foo, fileDiff, false));
+        assertEquals(Collections.singletonMap("org.example.Foo", Collections.singletonList(16)),
+                new LineChangeDetector().getModifiedLinesPerQualifiedName(this.foo, fileDiff, true));
+    }
+
+    @Test
+    public void testMalformedFile() throws IOException {
+        Files.write(this.foo.toPath(), "package org.example;\nclass Foo {\n    void foo() {\n}\n".getBytes(StandardCharsets.UTF_8));
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -3 +3 @@",
+                "-    void foo() {",
+                "+    void bar() {"
+        );
+        assertNull(new LineChangeDetector().getModifiedLinesPerQualifiedName(this.foo, fileDiff, false));
+    }
+
+    @Test
+    public void testOtherFiles() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/README.md",
+                "+++ b/README.md",
+                "@@ -1 +1 @@",
+                "-foo",
+                "+bar"
+        );
+        final File readme = new File(this.directory, "README.md");
+        Files.write(readme.toPath(), "foo\n".getBytes(StandardCharsets.UTF_8));
+        assertTrue(new LineChangeDetector().getModifiedLinesPerQualifiedName(readme, fileDiff, false).isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class PatchApplierTest {
+
+    private static final String FOO = "class Foo {\n    int a;\n    int b;\n}\n";
+
+    private static FileDiff parse(String... lines) throws IOException {
+        return UnifiedDiffParserTest.parse(lines).get(0);
+    }
+
+    @Test
+    public void testModifiedFile() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -1,3 +1,4 @@",
+                " class Foo {",
+                "-    int a;",
+                "+    int c;",
+                "+    int d;",
+                "     int b;"
+        );
+        assertEquals("class Foo {\n    int c;\n    int d;\n    int b;\n}\n", new PatchApplier().apply(FOO, fileDiff));
+    }
+
+    @Test
+    public void testSeveralHunks() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -1,2 +1,2 @@",
+                "-class Foo {",
+                "+class Bar {",
+                "     int a;",
+                "@@ -3,2 +3,2 @@",
+                "     int b;",
+                "-}",
+                "+} // Bar"
+        );
+        assertEquals("class Bar {\n    int a;\n    int b;\n} // Bar\n", new PatchApplier().apply(FOO, fileDiff));
+    }
+
+    @Test
+    public void testAddedFile() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- /dev/null",
+                "+++ b/Foo.java",
+                "@@ -0,0 +1,2 @@",
+                "+class Foo {",
+                "+}"
+        );
+        assertEquals("class Foo {\n}\n", new PatchApplier().apply("", fileDiff));
+    }
+
+    @Test
+    public void testShiftedHunk() throws IOException {
+        // the diff has been made on a version without the two first lines
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -2,2 +2,2 @@",
+                "-    int a;",
+                "+    int c;",
+                "     int b;"
+        );
+        assertEquals("package foo;\n\nclass Foo {\n    int c;\n    int b;\n}\n",
+                new PatchApplier().apply("package foo;\n\n" + FOO, fileDiff));
+    }
+
+    @Test
+    public void testCarriageReturns() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -2 +2 @@",
+                "-    int a;",
+                "+    int c;"
+        );
+        assertEquals("class Foo {\n    int c;\n    int b;\n}\n", new PatchApplier().apply(FOO.replace("\n", "\r\n"), fileDiff));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHunkThatDoesNotApply() throws IOException {
+        final FileDiff fileDiff = parse(
+                "--- a/Foo.java",
+                "+++ b/Foo.java",
+                "@@ -2 +2 @@",
+                "-    int z;",
+                "+    int c;"
+        );
+        new PatchApplier().apply(FOO, fileDiff);
+    }
+}
@@ -0,0 +1,192 @@
+package eu.stamp_project.diff_test_selection.diff;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UnifiedDiffParserTest {
+
+    static List<FileDiff> parse(String... lines) throws IOException {
+        final List<FileDiff> fileDiffs = new ArrayList<>();
+        try (UnifiedDiffParser parser = new UnifiedDiffParser(new StringReader(String.join("\n", lines) + "\n"))) {
+            while (parser.hasNext()) {
+                fileDiffs.add(parser.next());
+            }
+        }
+        return fileDiffs;
+    }
+
+    @Test
+    public void testModifiedFile() throws IOException {
+        final List<FileDiff> fileDiffs = parse(
+                "diff --git a/src/main/java/Foo.java b/src/main/java/Foo.java",
+                "index 1234567..89abcde 100644",
+                "--- a/src/main/java/Foo.java",
+                "+++ b/src/main/java/Foo.java",
+                "@@ -1,3 +1,3 @@",
+                " class Foo {",
+                "-    int a;",
+                "+    int b;",
+                " }"
+        );
+        assertEquals(1, fileDiffs.size());
+        final FileDiff fileDiff = fileDiffs.get(0);
+        assertEquals(FileDiff.Type.MODIFIED, fileDiff.getType());
+        assertEquals("src/main/java/Foo.java", fileDiff.getOldPath());
+        assertEquals("src/main/java/Foo.java", fileDiff.getNewPath());
+        assertEquals(1, fileDiff.getHunks().size());
+        final Hunk hunk = fileDiff.getHunks().get(0);
+        assertEquals(1, hunk.getOldStart());
+        assertEquals(3, hunk.getOldLength());
+        assertEquals(Arrays.asList(" class Foo {", "-    int a;", "+    int b;", " }"), hunk.getLines());
+    }
+
+    @Test
+    public void testRenamedFiles() throws IOException {
+        final List<FileDiff> fileDiffs = parse(
+                "diff --git a/src/main/java/Old.java b/src/main/java/New.java",
+                "similarity index 100%",
+                "rename from src/main/java/Old.java",
+                "rename to src/main/java/New.java",
+                "diff --git a/src/main/java/Foo.java b/src/main/java/Bar.java",
+                "similarity index 80%",
+                "rename from src/main/java/Foo.java",
+                "rename to src/main/java/Bar.java",
+                "index 1234567..89abcde 100644",
+                "--- a/src/main/java/Foo.java",
+                "+++ b/src/main/java/Bar.java",
+                "@@ -1 +1 @@",
+                "-class Foo {}",
+                "+class Bar {}"
+        );
+        assertEquals(2, fileDiffs.size());
+        // a pure rename has no "---" and "+++" lines
+        assertEquals(FileDiff.Type.RENAMED, fileDiffs.get(0).getType());
+        assertEquals("src/main/java/Old.java", fileDiffs.get(0).getOldPath());
+        assertEquals("src/main/java/New.java", fileDiffs.get(0).getNewPath());
+        assertTrue(fileDiffs.get(0).getHunks().isEmpty());
+        assertEquals(FileDiff.Type.RENAMED, fileDiffs.get(1).getType());
+        assertEquals("src/main/java/Foo.java", fileDiffs.get(1).getOldPath());
+        assertEquals("src/main/java/Bar.java", fileDiffs.get(1).getNewPath());
+        assertEquals(1, fileDiffs.get(1).getHunks().size());
+    }
+
+    @Test
+    public void testAddedAndDeletedFiles() throws IOException {
+        final List<FileDiff> fileDiffs = parse(
+                "diff --git a/src/main/java/Foo.java b/src/main/java/Foo.java",
+                "new file mode 100644",
+                "index 0000000..1234567",
+                "--- /dev/null",
+                "+++ b/src/main/java/Foo.java",
+                "@@ -0,0 +1,2 @@",
+                "+class Foo {",
+                "+}",
+                "diff --git a/src/main/java/Bar.java b/src/main/java/Bar.java",
+                "deleted file mode 100644",
+                "index 1234567..0000000",
+                "--- a/src/main/java/Bar.java",
+                "+++ /dev/null",
+                "@@ -1 +0,0 @@",
+                "-class Bar {}"
+        );
+        assertEquals(2, fileDiffs.size());
+        assertEquals(FileDiff.Type.ADDED, fileDiffs.get(0).getType());
+        assertNull(fileDiffs.get(0).getOldPath());
+        assertEquals("src/main/java/Foo.java", fileDiffs.get(0).getNewPath());
+        assertEquals(FileDiff.Type.DELETED, fileDiffs.get(1).getType());
+        assertEquals("src/main/java/Bar.java", fileDiffs.get(1).getOldPath());
+        assertNull(fileDiffs.get(1).getNewPath());
+    }
+
+    @Test
+    public void testDevNullWithoutGitHeaders() throws IOException {
+        final List<FileDiff> fileDiffs = parse(
+                "--- /dev/null\t2018-10-17 10:00:00.000000000 +0200",
+                "+++ project/src/main/java/Foo.java\t2018-10-17 10:00:00.000000000 +0200",
+                "@@ -0,0 +1 @@",
+                "+class Foo {}",
+                "--- project/src/main/java/Bar.java\t2018-10-17 10:00:00.000000000 +0200",
+                "+++ project/src/main/java/Bar.java\t2018-10-17 10:00:00.000000000 +0200",
+                "@@ -1 +1 @@",
+                "-class Bar {}",
+                "+class Bar { }"
+        );
+        assertEquals(2, fileDiffs.size());
+        assertEquals(FileDiff.Type.ADDED, fileDiffs.get(0).getType());
+        assertNull(fileDiffs.get(0).getOldPath());
+        // without the prefixes of git, the paths are kept untouched
+        assertEquals("project/src/main/java/Foo.java", fileDiffs.get(0).getNewPath());
+        assertEquals(FileDiff.Type.MODIFIED, fileDiffs.get(1).getType());
+        assertEquals("project/src/main/java/Bar.java", fileDiffs.get(1).getOldPath());
+    }
+
+    @Test
+    public void testNoNewlineAtEndOfFile() throws IOException {
+        final List<FileDiff> fileDiffs = parse(
+                "diff --git a/src/main/java/Foo.java b/src/main/java/Foo.java",
+                "--- a/src/main/java/Foo.java",
+                "+++ b/src/main/java/Foo.java",
+                "@@ -1,2 +1,2 @@",
+                " class Foo {",
+                "-}",
+                "\\ No newline at end of file",
+                "+}",
+                "\\ No newline at end of file",
+                "diff --git a/src/main/java/Bar.java b/src/main/java/Bar.java",
+                "--- a/src/main/java/Bar.java",
+                "+++ b/src/main/java/Bar.java",
+                "@@ -1 +1 @@",
+                "-class Bar {}",
+                "\\ No newline at end of file",
+                "+class Bar { }"
+        );
+        assertEquals(2, fileDiffs.size());
+        assertEquals(Arrays.asList(" class Foo {", "-}", "+}"), fileDiffs.get(0).getHunks().get(0).getLines());
+        assertEquals(Arrays.asList("-class Bar {}", "+class Bar { }"), fileDiffs.get(1).getHunks().get(0).getLines());
+    }
+
+    @Test
+    public void testRemovedLineThatLooksLikeAHeader() throws IOException {
+        final List<FileDiff> fileDiffs = parse(
+                "diff --git a/src/main/java/Foo.java b/src/main/java/Foo.java",
+                "--- a/src/main/java/Foo.java",
+                "+++ b/src/main/java/Foo.java",
+                "@@ -1,3 +1,2 @@",
+                " class Foo {",
+                "--- i;",
+                " }"
+        );
+        assertEquals(1, fileDiffs.size());
+        assertEquals(Arrays.asList(" class Foo {", "--- i;", " }"), fileDiffs.get(0).getHunks().get(0).getLines());
+    }
+
+    @Test
+    public void testBinaryFile() throws IOException {
+        final List<FileDiff> fileDiffs = parse(
+                "diff --git a/logo.png b/logo.png",
+                "index 1234567..89abcde 100644",
+                "Binary files a/logo.png and b/logo.png differ"
+        );
+        assertEquals(1, fileDiffs.size());
+        assertTrue(fileDiffs.get(0).isBinary());
+        assertEquals("logo.png", fileDiffs.get(0).getOldPath());
+        assertTrue(fileDiffs.get(0).getHunks().isEmpty());
+    }
+
+    @Test
+    public void testEmptyDiff() throws IOException {
+        try (UnifiedDiffParser parser = new UnifiedDiffParser(new StringReader(""))) {
+            assertFalse(parser.hasNext());
+        }
+    }
+}
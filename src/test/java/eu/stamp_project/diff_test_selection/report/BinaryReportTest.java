@@ -0,0 +1,87 @@
+package eu.stamp_project.diff_test_selection.report;
+
+import eu.stamp_project.diff_test_selection.coverage.CoverageIndex;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class BinaryReportTest {
+
+    private File output;
+
+    @Before
+    public void setUp() throws IOException {
+        this.output = File.createTempFile("report", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        this.output.delete();
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testReport() throws IOException {
+        final Map<String, Set<String>> testThatExecuteChanges = new LinkedHashMap<>();
+        testThatExecuteChanges.put("org.example.FooTest", new LinkedHashSet<>(Arrays.asList("test1", "test[\u00e9]")));
+        testThatExecuteChanges.put("org.example.BarTest", Collections.singleton("test3"));
+        new BinaryReport().report(new SystemStreamLog(), this.output.getAbsolutePath(), testThatExecuteChanges,
+                Collections.singletonMap("org.example.FooTest#test1", 0.5D));
+
+        try (DataInputStream input = new DataInputStream(new FileInputStream(this.output))) {
+            assertEquals(BinaryReport.MAGIC, input.readInt());
+            assertEquals(BinaryReport.VERSION, input.readInt());
+            assertEquals(2, input.readInt());
+
+            assertEquals("org.example.FooTest", readString(input));
+            assertEquals(2, input.readInt());
+            assertEquals("test1", readString(input));
+            assertEquals(0.5D, input.readDouble(), 0.0D);
+            // the length is the number of UTF-8 bytes, not of characters
+            assertEquals(8, input.readInt());
+            final byte[] bytes = new byte[8];
+            input.readFully(bytes);
+            assertEquals("test[\u00e9]", new String(bytes, StandardCharsets.UTF_8));
+            assertEquals(CoverageIndex.UNKNOWN_DURATION, input.readDouble(), 0.0D);
+
+            assertEquals("org.example.BarTest", readString(input));
+            assertEquals(1, input.readInt());
+            assertEquals("test3", readString(input));
+            // the duration is negative when it is unknown
+            assertEquals(-1.0D, input.readDouble(), 0.0D);
+
+            assertEquals(-1, input.read());
+        }
+    }
+
+    @Test
+    public void testEmptyReport() throws IOException {
+        new BinaryReport().report(new SystemStreamLog(), this.output.getAbsolutePath(), Collections.emptyMap());
+        try (DataInputStream input = new DataInputStream(new FileInputStream(this.output))) {
+            assertEquals(BinaryReport.MAGIC, input.readInt());
+            assertEquals(BinaryReport.VERSION, input.readInt());
+            assertEquals(0, input.readInt());
+            assertEquals(-1, input.read());
+        }
+    }
+}
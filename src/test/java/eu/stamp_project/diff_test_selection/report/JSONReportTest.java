@@ -0,0 +1,65 @@
+package eu.stamp_project.diff_test_selection.report;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class JSONReportTest {
+
+    private File output;
+
+    @Before
+    public void setUp() throws IOException {
+        this.output = File.createTempFile("report", ".json");
+    }
+
+    @After
+    public void tearDown() {
+        this.output.delete();
+    }
+
+    @Test
+    public void testQuote() {
+        assertEquals("\"org.example.FooTest\"", JSONReport.quote("org.example.FooTest"));
+        assertEquals("\"\"", JSONReport.quote(""));
+        assertEquals("\"a \\\"quoted\\\" name\"", JSONReport.quote("a \"quoted\" name"));
+        assertEquals("\"C:\\\\tests\"", JSONReport.quote("C:\\tests"));
+        assertEquals("\"\\n\\r\\t\"", JSONReport.quote("\n\r\t"));
+        assertEquals("\"\\u0001\\u001f \"", JSONReport.quote("\u0001\u001f "));
+        assertEquals("\"test[\u00e9]\"", JSONReport.quote("test[\u00e9]"));
+    }
+
+    @Test
+    public void testReport() throws IOException {
+        final Map<String, Set<String>> testThatExecuteChanges = new LinkedHashMap<>();
+        testThatExecuteChanges.put("org.example.FooTest", new LinkedHashSet<>(Arrays.asList("test1", "test\"2\"")));
+        testThatExecuteChanges.put("org.example.BarTest", Collections.singleton("test3"));
+        new JSONReport().report(new SystemStreamLog(), this.output.getAbsolutePath(), testThatExecuteChanges,
+                Collections.singletonMap("org.example.FooTest#test1", 0.5D));
+        assertEquals("{\"testClasses\":[" +
+                        "{\"name\":\"org.example.FooTest\",\"methods\":[{\"name\":\"test1\",\"duration\":0.5},{\"name\":\"test\\\"2\\\"\"}]}," +
+                        "{\"name\":\"org.example.BarTest\",\"methods\":[{\"name\":\"test3\"}]}" +
+                        "]}",
+                new String(Files.readAllBytes(this.output.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testEmptyReport() throws IOException {
+        new JSONReport().report(new SystemStreamLog(), this.output.getAbsolutePath(), Collections.emptyMap());
+        assertEquals("{\"testClasses\":[]}", new String(Files.readAllBytes(this.output.toPath()), StandardCharsets.UTF_8));
+    }
+}